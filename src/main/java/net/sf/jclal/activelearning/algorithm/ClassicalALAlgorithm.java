@@ -63,6 +63,17 @@ public class ClassicalALAlgorithm extends AbstractALAlgorithm implements ITool {
 	 */
 	private List<IStopCriterion> stopCriterionList;
 
+	/**
+	 * Whether the test of the model is done while the instances are selected
+	 */
+	private boolean pipelinedEvaluation = false;
+
+	/**
+	 * Whether the test of the model of the current iteration was started
+	 * before the selection
+	 */
+	private boolean testStarted;
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -121,6 +132,10 @@ public class ClassicalALAlgorithm extends AbstractALAlgorithm implements ITool {
 		// Do training with base classifier over labeled instances
 		doTraining();
 
+		// The test of the new model does not depend on the selection
+		testStarted = pipelinedEvaluation && scenario.getQueryStrategy() instanceof AbstractQueryStrategy
+				&& ((AbstractQueryStrategy) scenario.getQueryStrategy()).startTestModel();
+
 		// Do selection by scenario and query strategy
 		doSelectionIntances();
 
@@ -159,6 +174,27 @@ public class ClassicalALAlgorithm extends AbstractALAlgorithm implements ITool {
 		this.iteration = iteration;
 	}
 
+	/**
+	 * Return whether the test of the model is done while the instances are
+	 * selected
+	 *
+	 * @return True if the evaluation is pipelined
+	 */
+	public boolean isPipelinedEvaluation() {
+		return pipelinedEvaluation;
+	}
+
+	/**
+	 * Set whether the test of the model is done while the instances are
+	 * selected. The predictions of the classifier must be thread-safe.
+	 *
+	 * @param pipelinedEvaluation
+	 *            True to pipeline the evaluation
+	 */
+	public void setPipelinedEvaluation(boolean pipelinedEvaluation) {
+		this.pipelinedEvaluation = pipelinedEvaluation;
+	}
+
 	/**
 	 * Label the selected instances by query strategy
 	 */
@@ -175,7 +211,13 @@ public class ClassicalALAlgorithm extends AbstractALAlgorithm implements ITool {
 		scenario.evaluationTest();
 		timeControl.mark();
 
-		timeControl.timeName("Test time", timeControl.timeLastOnes());
+		if (testStarted) {
+			// the time of the test itself, not the time waited for it
+			timeControl.timeName("Test time",
+					((AbstractQueryStrategy) scenario.getQueryStrategy()).getTestModelTime());
+		} else {
+			timeControl.timeName("Test time", timeControl.timeLastOnes());
+		}
 
 		timeControl.timeName("Iteration time",
 				timeControl.time("Training time") + timeControl.time("Instances selection time"));
@@ -336,6 +378,12 @@ public class ClassicalALAlgorithm extends AbstractALAlgorithm implements ITool {
 	 *            Class: All
 	 *            </p>
 	 *            </li>
+	 *            <li>
+	 *            <p>
+	 *            <b>pipelined-evaluation= boolean.</b> The test of the model
+	 *            is done while the instances are selected, false by default.
+	 *            </p>
+	 *            </li>
 	 *            </ul>
 	 */
 	@Override
@@ -348,6 +396,8 @@ public class ClassicalALAlgorithm extends AbstractALAlgorithm implements ITool {
 
 		// Set the scenario configuration
 		setScenarioConfiguration(configuration);
+
+		setPipelinedEvaluation(configuration.getBoolean("pipelined-evaluation", pipelinedEvaluation));
 	}
 
 	/**
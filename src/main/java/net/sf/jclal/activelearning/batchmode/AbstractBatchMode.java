@@ -15,8 +15,12 @@
  */
 package net.sf.jclal.activelearning.batchmode;
 
+import java.util.ArrayList;
+import java.util.List;
 import net.sf.jclal.core.IBatchMode;
 import net.sf.jclal.core.IConfigure;
+import net.sf.jclal.core.IQueryStrategy;
+import net.sf.jclal.util.sort.Container;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
 
@@ -80,6 +84,26 @@ public abstract class AbstractBatchMode implements IBatchMode, IConfigure {
 		setBatchSize(batchT);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * By default the utilities are wrapped in containers and the selection is
+	 * done by {@link #instancesSelection(IQueryStrategy, List)}.
+	 */
+	@Override
+	@SuppressWarnings("rawtypes")
+	public List<Integer> instancesSelection(IQueryStrategy queryStrategy, double[] utilities, int[] indexes) {
+
+		// The list type is the one of IBatchMode
+		List<Container> instanceUtilities = new ArrayList<Container>(utilities.length);
+
+		for (int i = 0; i < utilities.length; i++) {
+			instanceUtilities.add(new Container<Integer>(utilities[i], indexes == null ? i : indexes[i]));
+		}
+
+		return instancesSelection(queryStrategy, instanceUtilities);
+	}
+
 	@Override
 	public String toString() {
 
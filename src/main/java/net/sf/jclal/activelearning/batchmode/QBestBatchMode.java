@@ -21,6 +21,8 @@ import net.sf.jclal.core.IQueryStrategy;
 import net.sf.jclal.util.sort.Container;
 import net.sf.jclal.util.sort.OrderUtils;
 
+import org.apache.commons.configuration.Configuration;
+
 /**
  * Implementation of Q-best batch construction.
  *
@@ -42,9 +44,17 @@ public class QBestBatchMode extends AbstractBatchMode {
 
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Set if the selection can be parallelized.
+	 */
+	private boolean parallel = false;
+
 	/**
      * Order the instances and return according to the type of active learning strategy.
      *
+     * Only the best batch-size instances are ordered, the rest of the list is
+     * not sorted.
+     *
      * @param queryStrategy To analyze if the strategy is maximal or minimal
      * @param intanceUtilities The utility value of the unlabeled instances
      * @return The indexes of the selected instances
@@ -52,21 +62,85 @@ public class QBestBatchMode extends AbstractBatchMode {
     @Override
     public List<Integer> instancesSelection(IQueryStrategy queryStrategy, List<Container> intanceUtilities) {
 
-        OrderUtils.mergeSort(intanceUtilities, queryStrategy.isMaximal());
+        double[] utilities = new double[intanceUtilities.size()];
 
-        List<Integer> selected = new ArrayList<Integer>();
+        for (int i = 0; i < utilities.length; i++) {
+            utilities[i] = intanceUtilities.get(i).getKey();
+        }
 
-        for (Container toOrder : intanceUtilities) {
+        int[] best = OrderUtils.selectBest(utilities, getBatchSize(), queryStrategy.isMaximal(), isParallel());
 
-            if (selected.size() < getBatchSize()) {
+        List<Integer> selected = new ArrayList<Integer>(best.length);
 
-                selected.add(Integer.parseInt(toOrder.getValue().toString()));
+        for (int position : best) {
 
-            } else {
-                break;
-            }
+            selected.add(Integer.parseInt(intanceUtilities.get(position).getValue().toString()));
         }
 
         return selected;
     }
+
+    /**
+     * Select the best instances according to the type of active learning
+     * strategy, with a bounded selection over the primitive arrays.
+     *
+     * @param queryStrategy To analyze if the strategy is maximal or minimal
+     * @param utilities The utility value of the candidate instances
+     * @param indexes The indexes of the candidate instances, or null if the
+     * candidate i is the unlabeled instance i
+     * @return The indexes of the selected instances
+     */
+    @Override
+    public List<Integer> instancesSelection(IQueryStrategy queryStrategy, double[] utilities, int[] indexes) {
+
+        int[] best = OrderUtils.selectBest(utilities, getBatchSize(), queryStrategy.isMaximal(), isParallel());
+
+        List<Integer> selected = new ArrayList<Integer>(best.length);
+
+        for (int position : best) {
+
+            selected.add(indexes == null ? position : indexes[position]);
+        }
+
+        return selected;
+    }
+
+	/**
+	 * Return true if the selection is parallelized.
+	 *
+	 * @return True if the selection is parallelized, false otherwise
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Set if the selection will be parallelized.
+	 *
+	 * @param parallel
+	 *            If the selection will be parallelized.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 *
+	 * @param configuration
+	 *            The configuration of Q-best batch mode.
+	 *
+	 *            The XML labels supported are:
+	 *            <ul>
+	 *            <li>batch-size= int</li>
+	 *            <li>parallel= boolean</li>
+	 *            </ul>
+	 */
+	@Override
+	public void configure(Configuration configuration) {
+
+		super.configure(configuration);
+
+		boolean parallelT = configuration.getBoolean("parallel", isParallel());
+		setParallel(parallelT);
+	}
 }
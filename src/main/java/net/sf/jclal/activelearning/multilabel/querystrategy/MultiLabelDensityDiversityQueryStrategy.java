@@ -26,6 +26,7 @@ import net.sf.jclal.core.IConfigure;
 import net.sf.jclal.core.IDataset;
 import net.sf.jclal.core.IQueryStrategy;
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
+import net.sf.jclal.util.distancefunction.DistanceCache;
 import net.sf.jclal.util.distancefunction.DistanceContainer;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
@@ -62,6 +63,12 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 	// memory
 	private boolean matrixOverFile = false;
 
+	// It stores whether the distances in main memory are stored as float
+	private boolean singlePrecisionDistances = false;
+
+	// The directory of the persistent distance cache, null if it is not used
+	private String distanceCache;
+
 	/**
 	 * Empty(default) constructor.
 	 */
@@ -135,6 +142,24 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 		subQueryStrategy.testModel();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The test of the model of the sub query strategy is started.
+	 */
+	@Override
+	public boolean startTestModel() {
+		return subQueryStrategy.startTestModel();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getTestModelTime() {
+		return subQueryStrategy.getTestModelTime();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -159,6 +184,14 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 		return subQueryStrategy.distributionForInstance(instance);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double[] distributionForInstance(int instanceIndex) {
+		return subQueryStrategy.distributionForInstance(instanceIndex);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -254,7 +287,7 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 	 * {@inheritDoc}
 	 */
 	@Override
-	public double[] testUnlabeledData() {
+	public double[] testUnlabeledData(int[] positions) {
 		/**
 		 * Compute the distance just once. The distance among the instances of
 		 * the unlabeled set are calculated
@@ -277,16 +310,27 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 		// found similarity once for unlabeled set
 		// the similarity among the instances of the
 		// unlabeled set are calculated
+		if (distanceValues == null && distanceCache != null) {
+			try {
+				distanceValues = new DistanceCache(distanceCache).getContainer(unlabelled, typeOfDistance,
+						isParallel(), subQueryStrategy.getLabelledData().getDataset());
+			} catch (Exception ex) {
+				Logger.getLogger(MultiLabelDensityDiversityQueryStrategy.class.getName()).log(Level.WARNING,
+						"The distance cache can not be used, the distances are computed", ex);
+			}
+		}
+
 		if (distanceValues == null) {
 			typeOfDistance.setInstances(unlabelled);
 			try {
-				distanceValues = new DistanceContainer(unlabelled, typeOfDistance, matrixOverFile);
+				distanceValues = new DistanceContainer(unlabelled, typeOfDistance, matrixOverFile, isParallel(),
+						singlePrecisionDistances);
 			} catch (Exception ex) {
 				Logger.getLogger(MultiLabelDensityDiversityQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
 			}
 		}
 
-		return super.testUnlabeledData();
+		return super.testUnlabeledData(positions);
 	}
 
 	/**
@@ -297,12 +341,23 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 
 		Instances unlabelled = subQueryStrategy.getUnlabelledData().getDataset();
 
+		return utilityInstance(unlabelled.indexOf(instance));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double utilityInstance(int instanceIndex) {
+
+		Instances unlabelled = subQueryStrategy.getUnlabelledData().getDataset();
+
 		int sizeUnlabeledData = unlabelled.numInstances();
 
 		// Step1
 		double step1;
 
-		step1 = subQueryStrategy.utilityInstance(instance);
+		step1 = subQueryStrategy.utilityInstance(instanceIndex);
 		// standard values
 
 		// If the utility is equal to 0 then the rest of the process is
@@ -319,9 +374,7 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 		}
 
 		// Step 2
-		int indexOfInstance = unlabelled.indexOf(instance);
-
-		double step2 = distanceValues.getAcumulativeValue(indexOfInstance);
+		double step2 = distanceValues.getAcumulativeValue(instanceIndex);
 
 		// step2 is divided by U=numInstancesUnlabeled
 		step2 /= sizeUnlabeledData;
@@ -417,6 +470,11 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 	 *            </p>
 	 *            </li>
 	 *            <li>matrix-file= boolean</li>
+	 *            <li>single-precision-distances= boolean, the distances in
+	 *            main memory are stored as float, false by default</li>
+	 *            <li>distance-cache= String, directory of a persistent cache
+	 *            of the distances among the labeled and unlabeled instances,
+	 *            not used by default</li>
 	 *            <li><b>sub-query-strategy type= class</b>
 	 *            <p>
 	 *            Package: net.sf.jclal.activelearning.multilabel.querystrategy
@@ -499,6 +557,60 @@ public class MultiLabelDensityDiversityQueryStrategy extends AbstractMultiLabelQ
 		boolean matrixFile = configuration.getBoolean("matrix-file", matrixOverFile);
 
 		setMatrixOverFile(matrixFile);
+
+		// Set if the distances are stored in single precision
+		setSinglePrecisionDistances(configuration.getBoolean("single-precision-distances",
+				singlePrecisionDistances));
+
+		// Set the directory of the distance cache
+		setDistanceCache(configuration.getString("distance-cache", distanceCache));
+	}
+
+	/**
+	 * Set the directory of a persistent cache of the distances. The distances
+	 * among the labeled and unlabeled instances, with the attribute ranges of
+	 * both sets, are computed once and shared by the runs over the same
+	 * labeled and unlabeled instances, i.e. the same split. The test
+	 * instances are not used. Each fold and each seed that changes the split
+	 * stores its own file, the files of the cache are never removed and the
+	 * directory must be cleaned manually. The
+	 * matrix-file and single-precision-distances options are not used with the
+	 * cache.
+	 *
+	 * @param distanceCache
+	 *            The directory, null to compute the distances in each run
+	 */
+	public void setDistanceCache(String distanceCache) {
+		this.distanceCache = distanceCache;
+	}
+
+	/**
+	 * Get the directory of the persistent cache of the distances.
+	 *
+	 * @return The directory, null if the cache is not used
+	 */
+	public String getDistanceCache() {
+		return distanceCache;
+	}
+
+	/**
+	 * Set whether the distances in main memory are stored as float, which
+	 * halves the memory of the distance matrix.
+	 *
+	 * @param singlePrecisionDistances
+	 *            The flag
+	 */
+	public void setSinglePrecisionDistances(boolean singlePrecisionDistances) {
+		this.singlePrecisionDistances = singlePrecisionDistances;
+	}
+
+	/**
+	 * Get whether the distances in main memory are stored as float.
+	 *
+	 * @return The flag
+	 */
+	public boolean isSinglePrecisionDistances() {
+		return singlePrecisionDistances;
 	}
 
 	/**
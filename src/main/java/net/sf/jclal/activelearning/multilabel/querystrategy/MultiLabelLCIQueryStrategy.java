@@ -68,10 +68,10 @@ public class MultiLabelLCIQueryStrategy extends AbstractMultiLabelQueryStrategy
 	 * {@inheritDoc}
 	 */
 	@Override
-	public double[] testUnlabeledData() {
+	public double[] testUnlabeledData(int[] positions) {
 
 		labelCardinality = ((MulanDataset) getLabelledData()).getMultiLabelDataset().getCardinality();
 
-		return super.testUnlabeledData();
+		return super.testUnlabeledData(positions);
 	}
 }
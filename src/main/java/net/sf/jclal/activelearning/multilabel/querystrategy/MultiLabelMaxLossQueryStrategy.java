@@ -55,6 +55,33 @@ public class MultiLabelMaxLossQueryStrategy extends AbstractMultiLabelQueryStrat
 	@Override
 	public double utilityInstance(Instance instance) {
 
+		return maxLoss(instance, -1);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The confidences of the multi-label classifier are taken from the
+	 * prediction cache.
+	 */
+	@Override
+	public double utilityInstance(int instanceIndex) {
+
+		return maxLoss(getUnlabelledData().instance(instanceIndex), instanceIndex);
+	}
+
+	/**
+	 * Compute the max loss of an instance.
+	 *
+	 * @param instance
+	 *            The instance to test.
+	 * @param instanceIndex
+	 *            The position of the instance in the unlabeled set, or -1 if
+	 *            it is not known.
+	 * @return The max loss of the instance.
+	 */
+	private double maxLoss(Instance instance, int instanceIndex) {
+
 		try {
 
 			if (!(((MulanClassifier) getClassifier()).getInternalClassifier() instanceof BinaryRelevance)) {
@@ -78,7 +105,15 @@ public class MultiLabelMaxLossQueryStrategy extends AbstractMultiLabelQueryStrat
 
 			int maxConfidenceClass;
 
-			maxConfidenceClass = Utils.maxIndex(learner.makePrediction(instance).getConfidences());
+			double[] confidences;
+
+			if (instanceIndex < 0) {
+				confidences = learner.makePrediction(instance).getConfidences();
+			} else {
+				confidences = distributionForInstance(instanceIndex);
+			}
+
+			maxConfidenceClass = Utils.maxIndex(confidences);
 
 			for (int l = 0; l < getNumLabels(); l++) {
 
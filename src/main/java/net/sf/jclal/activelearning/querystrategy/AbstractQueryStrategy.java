@@ -17,6 +17,8 @@ package net.sf.jclal.activelearning.querystrategy;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,15 +31,13 @@ import net.sf.jclal.core.IDataset;
 import net.sf.jclal.core.IQueryStrategy;
 import net.sf.jclal.dataset.WekaDataset;
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
-import net.sf.jclal.util.sort.Container;
-import net.sf.jclal.util.sort.OrderUtils;
-import net.sf.jclal.util.thread.ThreadControl;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.classifiers.UpdateableClassifier;
 import weka.core.Instance;
-import weka.core.Instances;
 
 /**
  * Abstract class for active learning strategies. All strategies must extend
@@ -104,6 +104,29 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 	 */
 	private boolean parallel = false;
 
+	/**
+	 * The maximum number of predictions stored in the prediction cache, by
+	 * default the cache is disabled.
+	 */
+	private int predictionCacheCapacity = 0;
+
+	/**
+	 * Predictions of the current model over the unlabeled set. It is created
+	 * on demand, the copies of the query strategy do not share it.
+	 */
+	private transient PredictionCache predictionCache;
+
+	/**
+	 * The test of the current model started by {@link #startTestModel()}.
+	 */
+	private transient Future<AbstractEvaluation> pendingEvaluation;
+
+	/**
+	 * The time in milliseconds spent by the last test started by
+	 * {@link #startTestModel()}.
+	 */
+	private transient volatile long testModelTime;
+
 	/**
 	 * Get the selected instances
 	 * 
@@ -206,6 +229,46 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 	@Override
 	public void setUnlabelledData(IDataset unlabelledData) {
 		this.unlabelledData = unlabelledData;
+
+		getPredictionCache().invalidate();
+	}
+
+	/**
+	 * Get the maximum number of predictions stored in the prediction cache.
+	 *
+	 * @return The capacity of the prediction cache.
+	 */
+	public int getPredictionCacheCapacity() {
+		return predictionCacheCapacity;
+	}
+
+	/**
+	 * Set the maximum number of predictions stored in the prediction cache, 0
+	 * disables the cache.
+	 *
+	 * @param predictionCacheCapacity
+	 *            The capacity of the prediction cache.
+	 */
+	public synchronized void setPredictionCacheCapacity(int predictionCacheCapacity) {
+		this.predictionCacheCapacity = predictionCacheCapacity;
+
+		predictionCache = null;
+	}
+
+	/**
+	 * Get the cache of the predictions made by the current model over the
+	 * unlabeled set. It is invalidated when the model is trained and when the
+	 * unlabeled set changes.
+	 *
+	 * @return The prediction cache.
+	 */
+	public synchronized PredictionCache getPredictionCache() {
+
+		if (predictionCache == null) {
+			predictionCache = new PredictionCache(predictionCacheCapacity);
+		}
+
+		return predictionCache;
 	}
 
 	/**
@@ -246,6 +309,11 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 	 */
 	@Override
 	public void training() {
+
+		// the predictions of the previous model are discarded
+		getPredictionCache().invalidate();
+		getPredictionCache().resetCounters();
+
 		try {
 
 			if (!firstTime) {
@@ -320,12 +388,27 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 
 		try {
 			// test phase with the actual model
-			AbstractEvaluation evaluation = classifier.testModel(testData);
+			AbstractEvaluation evaluation;
+
+			if (pendingEvaluation != null) {
+				try {
+					evaluation = pendingEvaluation.get();
+				} finally {
+					pendingEvaluation = null;
+				}
+			} else {
+				evaluation = classifier.testModel(testData);
+			}
 
 			evaluation.setLabeledSetSize(getLabelledData().getNumInstances());
 
 			evaluation.setUnlabeledSetSize(getUnlabelledData().getNumInstances());
 
+			if (getPredictionCache().isEnabled()) {
+				evaluation.setMetricValue("Prediction cache hits", getPredictionCache().getHits());
+				evaluation.setMetricValue("Prediction cache misses", getPredictionCache().getMisses());
+			}
+
 			evaluations.add(evaluation);
 
 		} catch (Exception e) {
@@ -337,36 +420,83 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 
 	/**
 	 * {@inheritDoc}
+	 *
+	 * By default, the instance in the given position is taken from the
+	 * unlabeled set and it is tested with {@link #utilityInstance(Instance)}.
 	 */
 	@Override
-	public double[] testUnlabeledData() {
+	public double utilityInstance(int instanceIndex) {
+		return utilityInstance(getUnlabelledData().instance(instanceIndex));
+	}
 
-		// found values of all unlabeled instances
-		final double[] values = new double[getUnlabelledData().getNumInstances()];
+	/**
+	 * Start the test of the current model on the test set in the shared pool,
+	 * so it can be done while the instances are selected. The next call to
+	 * {@link #testModel()} waits for it and stores its evaluation. The model
+	 * must not be trained until then, and its predictions must be thread-safe.
+	 *
+	 * @return True if the test was started, false if the next call to
+	 *         {@link #testModel()} will test the model itself
+	 */
+	public boolean startTestModel() {
 
-		int pos = 0;
+		final IClassifier model = getClassifier();
+		final IDataset test = getTestData();
 
-		Instances unlabeledInstances = getUnlabelledData().getDataset();
+		pendingEvaluation = ParallelControl.getPool().submit(new Callable<AbstractEvaluation>() {
 
-		ThreadControl thread = ThreadControl.defaultThreadControl(isParallel());
+			@Override
+			public AbstractEvaluation call() throws Exception {
 
-		for (final Instance instance : unlabeledInstances) {
+				long begin = System.currentTimeMillis();
 
-			// parallel
-			final int i = pos++;
+				try {
+					return model.testModel(test);
+				} finally {
+					testModelTime = System.currentTimeMillis() - begin;
+				}
+			}
+		});
 
-			thread.execute(new Runnable() {
+		return true;
+	}
 
-				@Override
-				public void run() {
-					values[i] = utilityInstance(instance);
-				}
-			});
-			// end-parallel
-		}
+	/**
+	 * Get the time spent by the last test started by {@link #startTestModel()}.
+	 *
+	 * @return The time in milliseconds.
+	 */
+	public long getTestModelTime() {
+		return testModelTime;
+	}
 
-		thread.end();
-		thread = null;
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double[] testUnlabeledData() {
+		return testUnlabeledData(null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double[] testUnlabeledData(final int[] positions) {
+
+		// found values of the unlabeled instances
+		final double[] values = new double[positions == null ? getUnlabelledData().getNumInstances()
+				: positions.length];
+
+		ParallelControl.forRange(0, values.length, isParallel(), new RangeTask() {
+
+			@Override
+			public void compute(int begin, int end) {
+				for (int i = begin; i < end; i++) {
+					values[i] = utilityInstance(positions == null ? i : positions[i]);
+				}
+			}
+		});
 
 		return values;
 	}
@@ -403,6 +533,30 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 		return null;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The predictions are stored in the prediction cache.
+	 */
+	@Override
+	public double[] distributionForInstance(int instanceIndex) {
+
+		PredictionCache cache = getPredictionCache();
+
+		double[] distribution = cache.get(PredictionCache.MODEL, instanceIndex);
+
+		if (distribution == null) {
+
+			long version = cache.getVersion();
+
+			distribution = distributionForInstance(getUnlabelledData().instance(instanceIndex));
+
+			cache.put(version, PredictionCache.MODEL, instanceIndex, distribution);
+		}
+
+		return distribution;
+	}
+
 	/**
 	 *
 	 * @param configuration
@@ -410,6 +564,7 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 	 *            XML labels supported are:
 	 *            <ul>
 	 *            <li><b>maximal= boolean</b></li>
+	 *            <li><b>prediction-cache-capacity= int</b></li>
 	 *            <li><b>wrapper-classifier type= class</b>
 	 *            <p>
 	 *            Package: net.sf.jclal.classifier
@@ -430,6 +585,15 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 		boolean parallel = configuration.getBoolean("parallel", isParallel());
 		setParallel(parallel);
 
+		// Set the capacity of the prediction cache
+		int capacity = configuration.getInt("prediction-cache-capacity", getPredictionCacheCapacity());
+
+		if (capacity < 0) {
+			throw new ConfigurationRuntimeException("\nIllegal prediction cache capacity: " + capacity);
+		}
+
+		setPredictionCacheCapacity(capacity);
+
 		String wrapperError = "wrapper-classifier type= ";
 		try {
 			// classifier classname
@@ -459,8 +623,7 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 	@Override
 	public String toString() {
         StringBuilder extra = new StringBuilder();
-        ThreadControl c = ThreadControl.defaultThreadControl(isParallel());
-        extra.append("-").append(c.getDefaultCores()).append("cores");
+        extra.append("-").append(ParallelControl.getCores(isParallel())).append("cores");
 
         return this.getClass().getSimpleName().concat(extra.toString());
     }
@@ -471,29 +634,25 @@ public abstract class AbstractQueryStrategy implements IQueryStrategy, IConfigur
 	@Override
 	public void updateLabeledData() {
 
-		ArrayList<Container> ordered = new ArrayList<Container>();
+		int[] indexes = new int[selectedInstances.size()];
 
 		// Adds the instances to labeled set
-		for (int index : selectedInstances) {
-			labelledData.add(unlabelledData.instance(index));
-			ordered.add(new Container(index, index));
+		for (int i = 0; i < indexes.length; i++) {
+			indexes[i] = selectedInstances.get(i);
+			labelledData.add(unlabelledData.instance(indexes[i]));
 		}
 
-		// To order the array in descendant order
-		OrderUtils.mergeSort(ordered, true);
-
-		// Removes the instances from unlabeled set. The deleting operation must
-		// be in descendant order
-		for (Container pairValue : ordered) {
-
-			unlabelledData.remove(Integer.parseInt(pairValue.getValue().toString()));
-		}
+		// Removes the instances from unlabeled set in a single pass
+		unlabelledData.removeIndexes(indexes);
 
 		numberOfSelectedInstances = selectedInstances.size();
 
 		// Clears the indexes of selected instances
 		selectedInstances.clear();
 
+		// the positions of the unlabeled instances have changed
+		getPredictionCache().invalidate();
+
 	}
 
 	/**
@@ -0,0 +1,202 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.activelearning.querystrategy;
+
+import java.util.HashMap;
+
+/**
+ * Cache of the predictions made by the current model of a query strategy over
+ * the unlabeled set.
+ *
+ * A prediction is identified by the version of the model, the slot (the model
+ * that made the prediction, e.g. a member of a committee, or {@link #MODEL}
+ * for the whole classifier) and the position of the instance in the unlabeled
+ * set. When the model is trained again or the unlabeled set changes, the
+ * version is increased and all the predictions are discarded. The number of
+ * stored predictions is bounded, once the cache is full the new predictions
+ * are not stored until the next version. The cache stores copies of the
+ * predictions, so the callers can reuse their buffers.
+ */
+public class PredictionCache {
+
+	/**
+	 * The slot of the predictions of the classifier of the query strategy.
+	 */
+	public static final int MODEL = -1;
+
+	/**
+	 * The maximum number of predictions stored.
+	 */
+	private int capacity;
+
+	/**
+	 * The version of the model.
+	 */
+	private long version;
+
+	/**
+	 * The number of predictions found in the cache.
+	 */
+	private long hits;
+
+	/**
+	 * The number of predictions that were not found in the cache.
+	 */
+	private long misses;
+
+	/**
+	 * The predictions.
+	 */
+	private HashMap<Long, double[]> entries;
+
+	/**
+	 * Constructor
+	 *
+	 * @param capacity
+	 *            The maximum number of predictions stored, 0 disables the
+	 *            cache.
+	 */
+	public PredictionCache(int capacity) {
+
+		this.capacity = Math.max(0, capacity);
+
+		entries = new HashMap<Long, double[]>();
+	}
+
+	/**
+	 * Return if the cache stores predictions.
+	 *
+	 * @return True if the capacity is greater than 0.
+	 */
+	public boolean isEnabled() {
+		return capacity > 0;
+	}
+
+	/**
+	 * Get the maximum number of predictions stored.
+	 *
+	 * @return The capacity of the cache.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the current version of the model. It must be read before computing
+	 * a prediction that will be stored with {@link #put}.
+	 *
+	 * @return The version of the model.
+	 */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Return a prediction of the current version of the model.
+	 *
+	 * @param slot
+	 *            The model that made the prediction.
+	 * @param position
+	 *            The position of the instance in the unlabeled set.
+	 * @return The prediction, or null if it is not in the cache. It is shared
+	 *         by all the callers, it must not be modified.
+	 */
+	public synchronized double[] get(int slot, int position) {
+
+		if (!isEnabled()) {
+			return null;
+		}
+
+		double[] prediction = entries.get(key(slot, position));
+
+		if (prediction == null) {
+			++misses;
+		} else {
+			++hits;
+		}
+
+		return prediction;
+	}
+
+	/**
+	 * Store a copy of a prediction. The prediction is ignored if the model
+	 * changed since the given version was read or if the cache is full.
+	 *
+	 * @param version
+	 *            The version of the model that made the prediction.
+	 * @param slot
+	 *            The model that made the prediction.
+	 * @param position
+	 *            The position of the instance in the unlabeled set.
+	 * @param prediction
+	 *            The prediction.
+	 */
+	public synchronized void put(long version, int slot, int position, double[] prediction) {
+
+		if (!isEnabled() || version != this.version || prediction == null) {
+			return;
+		}
+
+		Long key = key(slot, position);
+
+		if (entries.size() >= capacity && !entries.containsKey(key)) {
+			return;
+		}
+
+		entries.put(key, prediction.clone());
+	}
+
+	/**
+	 * Discard all the predictions, the version of the model is increased.
+	 */
+	public synchronized void invalidate() {
+
+		++version;
+
+		entries.clear();
+	}
+
+	/**
+	 * Get the number of predictions found in the cache since the last reset.
+	 *
+	 * @return The number of hits.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of predictions that were not found in the cache since
+	 * the last reset.
+	 *
+	 * @return The number of misses.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Set to 0 the number of hits and misses.
+	 */
+	public synchronized void resetCounters() {
+		hits = 0;
+		misses = 0;
+	}
+
+	private static Long key(int slot, int position) {
+		return ((long) slot << 32) | (position & 0xffffffffL);
+	}
+}
@@ -17,6 +17,8 @@ package net.sf.jclal.activelearning.scenario;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sf.jclal.activelearning.batchmode.AbstractBatchMode;
+import net.sf.jclal.activelearning.singlelabel.querystrategy.ErrorReductionQueryStrategy;
 import net.sf.jclal.core.IBatchMode;
 import net.sf.jclal.core.IConfigure;
 import net.sf.jclal.core.IOracle;
@@ -154,6 +156,27 @@ public abstract class AbstractScenario implements IScenario, IConfigure {
 		setQueryStrategyConfiguration(configuration);
 		setOracleConfiguration(configuration);
 
+		checkPruning();
+	}
+
+	/**
+	 * Checks that the error reduction strategy does not abandon candidates
+	 * that the batch mode could select, i.e. that its pruning-top-k is not
+	 * lower than the batch size.
+	 */
+	protected void checkPruning() {
+
+		if (queryStrategy instanceof ErrorReductionQueryStrategy && batchMode instanceof AbstractBatchMode) {
+
+			int pruningTopK = ((ErrorReductionQueryStrategy) queryStrategy).getPruningTopK();
+
+			int batchSize = ((AbstractBatchMode) batchMode).getBatchSize();
+
+			if (pruningTopK > 0 && pruningTopK < batchSize) {
+				throw new ConfigurationRuntimeException("\nIllegal pruning-top-k: <pruning-top-k>" + pruningTopK
+						+ "</pruning-top-k>. It must not be lower than the batch size " + batchSize);
+			}
+		}
 	}
 
 	/**
@@ -15,20 +15,47 @@
  */
 package net.sf.jclal.activelearning.scenario;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import net.sf.jclal.activelearning.querystrategy.AbstractQueryStrategy;
-import net.sf.jclal.util.sort.Container;
+import net.sf.jclal.core.IQueryStrategy;
+import net.sf.jclal.core.IRandGen;
+import net.sf.jclal.core.ISystem;
+import net.sf.jclal.core.ITool;
+import net.sf.jclal.evaluation.measure.AbstractEvaluation;
+import net.sf.jclal.util.dataset.DatasetUtils;
+import net.sf.jclal.util.sort.OrderUtils;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationRuntimeException;
+import weka.core.Utils;
 
 /**
  * Implementation of Pool-Based Sampling scenario.
  *
+ * By default all the unlabeled instances are scored in each iteration. When
+ * the full rescore period is greater than 1, the utilities of the last
+ * iteration are kept and only a subset of the pool is scored again: the
+ * previous top fraction, a random exploration sample and the instances whose
+ * score is older than the staleness bound. The whole pool is scored every
+ * full rescore period iterations. The fraction of the pool scored in each
+ * iteration is stored in the evaluations as "Scoring coverage".
+ *
+ * Alternatively, when the candidate pool size is set, only a random subset of
+ * the unlabeled set of that size is scored in each iteration, and the
+ * instances are selected among it. The subset can be stratified by the class
+ * predicted by the current model. The query strategies decide what the
+ * sampling saves: most of them only score the candidates, the variance
+ * reduction approximates its Fisher matrix with the candidates, but the error
+ * reduction still sums the loss of each candidate over the whole unlabeled
+ * set unless its loss-sample-size is set.
+ *
  * @author Oscar Gabriel Reyes Pupo
  * @author Maria del Carmen Rodriguez Hernandez
  * @author Eduardo Perez Perdomo
  *
  */
-public class PoolBasedSamplingScenario extends AbstractScenario {
+public class PoolBasedSamplingScenario extends AbstractScenario implements ITool {
 
 	private static final long serialVersionUID = 1L;
 	/**
@@ -36,27 +63,564 @@ public class PoolBasedSamplingScenario extends AbstractScenario {
 	 */
 	private double values[];
 
+	/**
+	 * The number of iterations since the value of each instance was computed.
+	 */
+	private int ages[];
+
+	/**
+	 * The number of selections done.
+	 */
+	private int iteration;
+
+	/**
+	 * The fraction of the unlabeled set scored in the last selection.
+	 */
+	private double coverage;
+
+	/**
+	 * The whole unlabeled set is scored every fullRescorePeriod iterations, 1
+	 * means that it is scored in all the iterations.
+	 */
+	private int fullRescorePeriod = 1;
+
+	/**
+	 * The fraction of the best instances of the last iteration that are
+	 * scored again.
+	 */
+	private double rescoreFraction = 0.1;
+
+	/**
+	 * The number of random instances scored again in each iteration.
+	 */
+	private int explorationSize = 0;
+
+	/**
+	 * The maximum number of iterations that a value is reused, 0 means that
+	 * only the full rescore period limits it.
+	 */
+	private int stalenessBound = 0;
+
+	/**
+	 * The number of unlabeled instances scored in each iteration, 0 means
+	 * that the candidates are not sampled.
+	 */
+	private int candidatePoolSize = 0;
+
+	/**
+	 * Whether the candidates are sampled in proportion to the classes
+	 * predicted by the current model.
+	 */
+	private boolean stratified = false;
+
+	/**
+	 * The random numbers generator, used to draw the exploration sample and
+	 * the candidates.
+	 */
+	private IRandGen randgen;
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void instancesSelection() {
 
-		// found values of all unlabeled instances
-		values = getQueryStrategy().testUnlabeledData();
+		IQueryStrategy queryStrategy = getQueryStrategy();
+
+		int n = queryStrategy.getUnlabelledData().getNumInstances();
+
+		if (isCandidateSampling() && candidatePoolSize < n) {
+
+			int[] positions = candidates(n);
+
+			double[] utilities = queryStrategy.testUnlabeledData(positions);
+
+			coverage = (double) positions.length / n;
+
+			((AbstractQueryStrategy) queryStrategy).getSelectedInstances()
+					.addAll(getBatchMode().instancesSelection(queryStrategy, utilities, positions));
+
+			return;
+		}
+
+		if (!isStaleScoring() || values == null || values.length != n || iteration % fullRescorePeriod == 0) {
+
+			// found values of all unlabeled instances
+			values = queryStrategy.testUnlabeledData();
+
+			ages = new int[n];
+
+			coverage = 1;
+
+		} else {
 
-		int unlabeledSize = getQueryStrategy().getUnlabelledData().getNumInstances();
+			int[] positions = stalePositions(queryStrategy.isMaximal());
+
+			double[] fresh = queryStrategy.testUnlabeledData(positions);
+
+			for (int i = 0; i < positions.length; i++) {
+				values[positions[i]] = fresh[i];
+				ages[positions[i]] = 0;
+			}
+
+			coverage = n == 0 ? 1 : (double) positions.length / n;
+		}
+
+		++iteration;
+
+		((AbstractQueryStrategy) queryStrategy).getSelectedInstances()
+				.addAll(getBatchMode().instancesSelection(queryStrategy, values, null));
+	}
+
+	/**
+	 * Compute the positions of the unlabeled set that must be scored again.
+	 * The age of the values is increased.
+	 *
+	 * @param isMaximal
+	 *            Whether the best instances have the greatest utilities.
+	 * @return The positions in ascending order.
+	 */
+	private int[] stalePositions(boolean isMaximal) {
+
+		int n = values.length;
+
+		BitSet rescore = new BitSet(n);
+
+		// the best instances of the last iteration
+		int top = (int) Math.ceil(rescoreFraction * n);
+
+		for (int position : OrderUtils.selectBest(values, top, isMaximal, false)) {
+			rescore.set(position);
+		}
 
-		List<Container> seleccion = new ArrayList<Container>(unlabeledSize);
+		// the exploration sample
+		rescore.or(sample(n, Math.min(n, explorationSize)));
 
-		for (int i = 0; i < unlabeledSize; i++) {
+		// the values that are too old
+		for (int i = 0; i < n; i++) {
 
-			seleccion.add(new Container(values[i], i));
+			++ages[i];
 
+			if (stalenessBound > 0 && ages[i] > stalenessBound) {
+				rescore.set(i);
+			}
 		}
 
-		((AbstractQueryStrategy) getQueryStrategy()).getSelectedInstances()
-				.addAll(getBatchMode().instancesSelection(getQueryStrategy(), seleccion));
+		int[] positions = new int[rescore.cardinality()];
+
+		for (int i = rescore.nextSetBit(0), j = 0; i >= 0; i = rescore.nextSetBit(i + 1)) {
+			positions[j++] = i;
+		}
+
+		return positions;
+	}
+
+	/**
+	 * Draw the candidates of the iteration.
+	 *
+	 * @param n
+	 *            The size of the unlabeled set, greater than the candidate
+	 *            pool size.
+	 * @return The positions of the candidates in ascending order.
+	 */
+	private int[] candidates(int n) {
+
+		BitSet sample;
+
+		if (stratified) {
+			sample = stratifiedSample(n, candidatePoolSize);
+		} else {
+			sample = sample(n, candidatePoolSize);
+		}
+
+		int[] positions = new int[sample.cardinality()];
+
+		for (int i = sample.nextSetBit(0), j = 0; i >= 0; i = sample.nextSetBit(i + 1)) {
+			positions[j++] = i;
+		}
+
+		return positions;
+	}
+
+	/**
+	 * Draw a random sample without replacement where each class predicted by
+	 * the current model has a number of instances proportional to its size.
+	 *
+	 * @param n
+	 *            The size of the unlabeled set.
+	 * @param size
+	 *            The size of the sample, not greater than n.
+	 * @return The positions of the sample.
+	 */
+	private BitSet stratifiedSample(int n, int size) {
+
+		double[][] distributions = getQueryStrategy().getClassifier()
+				.distributionForInstances(getQueryStrategy().getUnlabelledData());
+
+		int[] predicted = new int[n];
+
+		int numClasses = 0;
+
+		for (int i = 0; i < n; i++) {
+
+			predicted[i] = distributions[i] == null ? 0 : Utils.maxIndex(distributions[i]);
+
+			numClasses = Math.max(numClasses, predicted[i] + 1);
+		}
+
+		// positions of each stratum
+		int[] counts = new int[numClasses];
+
+		for (int c : predicted) {
+			++counts[c];
+		}
+
+		int[][] strata = new int[numClasses][];
+
+		for (int c = 0; c < numClasses; c++) {
+			strata[c] = new int[counts[c]];
+			counts[c] = 0;
+		}
+
+		for (int i = 0; i < n; i++) {
+			strata[predicted[i]][counts[predicted[i]]++] = i;
+		}
+
+		// proportional allocation, the remaining places go to the largest
+		// remainders
+		int[] allocation = new int[numClasses];
+		double[] remainders = new double[numClasses];
+
+		int allocated = 0;
+
+		for (int c = 0; c < numClasses; c++) {
+
+			double exact = (double) size * counts[c] / n;
+
+			allocation[c] = (int) exact;
+			remainders[c] = exact - allocation[c];
+
+			allocated += allocation[c];
+		}
+
+		for (int c : OrderUtils.selectBest(remainders, size - allocated, true, false)) {
+			++allocation[c];
+		}
+
+		BitSet sample = new BitSet(n);
+
+		for (int c = 0; c < numClasses; c++) {
+
+			BitSet local = sample(counts[c], allocation[c]);
+
+			for (int i = local.nextSetBit(0); i >= 0; i = local.nextSetBit(i + 1)) {
+				sample.set(strata[c][i]);
+			}
+		}
+
+		return sample;
+	}
+
+	/**
+	 * Draw a random sample without replacement.
+	 *
+	 * @param n
+	 *            The size of the population.
+	 * @param size
+	 *            The size of the sample, not greater than n.
+	 * @return The positions of the sample.
+	 */
+	protected BitSet sample(int n, int size) {
+
+		BitSet sample = new BitSet(n);
+
+		for (int position : DatasetUtils.samplePositions(randgen, n, size)) {
+			sample.set(position);
+		}
+
+		return sample;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The values kept for the next iteration are moved as the unlabeled set.
+	 */
+	@Override
+	public void updateLabelledData() {
+
+		if (isStaleScoring() && values != null) {
+
+			List<Integer> selected = ((AbstractQueryStrategy) getQueryStrategy()).getSelectedInstances();
+
+			BitSet removed = new BitSet(values.length);
+
+			for (int index : selected) {
+				removed.set(index);
+			}
+
+			int last = 0;
+
+			for (int i = removed.nextClearBit(0); i < values.length; i = removed.nextClearBit(i + 1)) {
+				values[last] = values[i];
+				ages[last++] = ages[i];
+			}
+
+			values = Arrays.copyOf(values, last);
+			ages = Arrays.copyOf(ages, last);
+		}
+
+		super.updateLabelledData();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The scoring coverage of the iteration is added to the evaluation when
+	 * the stale scoring or the candidate sampling are used.
+	 */
+	@Override
+	public void evaluationTest() {
+
+		super.evaluationTest();
+
+		List<AbstractEvaluation> evaluations = getQueryStrategy().getEvaluations();
+
+		if ((isStaleScoring() || isCandidateSampling()) && !evaluations.isEmpty()) {
+			evaluations.get(evaluations.size() - 1).setMetricValue("Scoring coverage", coverage);
+		}
+	}
+
+	/**
+	 * Return whether only a subset of the unlabeled set is scored in some
+	 * iterations.
+	 *
+	 * @return True if the full rescore period is greater than 1.
+	 */
+	public boolean isStaleScoring() {
+		return fullRescorePeriod > 1;
+	}
+
+	/**
+	 * Return whether only a random subset of the unlabeled set is scored.
+	 *
+	 * @return True if the candidate pool size is greater than 0.
+	 */
+	public boolean isCandidateSampling() {
+		return candidatePoolSize > 0;
+	}
+
+	/**
+	 * Get the fraction of the unlabeled set scored in the last selection.
+	 *
+	 * @return The scoring coverage.
+	 */
+	public double getCoverage() {
+		return coverage;
+	}
+
+	/**
+	 * Get the full rescore period
+	 *
+	 * @return The number of iterations between two scorings of the whole
+	 *         unlabeled set.
+	 */
+	public int getFullRescorePeriod() {
+		return fullRescorePeriod;
+	}
+
+	/**
+	 * Set the full rescore period
+	 *
+	 * @param fullRescorePeriod
+	 *            The number of iterations between two scorings of the whole
+	 *            unlabeled set, 1 to score it in all the iterations.
+	 */
+	public void setFullRescorePeriod(int fullRescorePeriod) {
+		this.fullRescorePeriod = fullRescorePeriod;
+	}
+
+	/**
+	 * Get the rescore fraction
+	 *
+	 * @return The fraction of the best instances that are scored again.
+	 */
+	public double getRescoreFraction() {
+		return rescoreFraction;
+	}
+
+	/**
+	 * Set the rescore fraction
+	 *
+	 * @param rescoreFraction
+	 *            The fraction of the best instances that are scored again.
+	 */
+	public void setRescoreFraction(double rescoreFraction) {
+		this.rescoreFraction = rescoreFraction;
+	}
+
+	/**
+	 * Get the exploration size
+	 *
+	 * @return The number of random instances scored again.
+	 */
+	public int getExplorationSize() {
+		return explorationSize;
+	}
+
+	/**
+	 * Set the exploration size
+	 *
+	 * @param explorationSize
+	 *            The number of random instances scored again.
+	 */
+	public void setExplorationSize(int explorationSize) {
+		this.explorationSize = explorationSize;
+	}
+
+	/**
+	 * Get the staleness bound
+	 *
+	 * @return The maximum number of iterations that a value is reused.
+	 */
+	public int getStalenessBound() {
+		return stalenessBound;
+	}
+
+	/**
+	 * Set the staleness bound
+	 *
+	 * @param stalenessBound
+	 *            The maximum number of iterations that a value is reused, 0
+	 *            means that only the full rescore period limits it.
+	 */
+	public void setStalenessBound(int stalenessBound) {
+		this.stalenessBound = stalenessBound;
+	}
+
+	/**
+	 * Get the candidate pool size
+	 *
+	 * @return The number of unlabeled instances scored in each iteration.
+	 */
+	public int getCandidatePoolSize() {
+		return candidatePoolSize;
+	}
+
+	/**
+	 * Set the candidate pool size
+	 *
+	 * @param candidatePoolSize
+	 *            The number of unlabeled instances scored in each iteration,
+	 *            0 to score all of them.
+	 */
+	public void setCandidatePoolSize(int candidatePoolSize) {
+		this.candidatePoolSize = candidatePoolSize;
+	}
+
+	/**
+	 * Return whether the candidates are stratified
+	 *
+	 * @return True if the candidates are sampled in proportion to the classes
+	 *         predicted by the current model.
+	 */
+	public boolean isStratified() {
+		return stratified;
+	}
+
+	/**
+	 * Set whether the candidates are stratified
+	 *
+	 * @param stratified
+	 *            True to sample the candidates in proportion to the classes
+	 *            predicted by the current model.
+	 */
+	public void setStratified(boolean stratified) {
+		this.stratified = stratified;
+	}
+
+	/**
+	 * Contextualize the random generator.
+	 *
+	 * @param context
+	 *            The context to use.
+	 */
+	@Override
+	public void contextualize(ISystem context) {
+
+		// the generator is only created if it is used, so the other random
+		// sequences of the experiment do not change
+		if (isCandidateSampling() || (isStaleScoring() && explorationSize > 0)) {
+			randgen = context.createRandGen();
+		}
+	}
+
+	/**
+	 *
+	 * @param configuration
+	 *            The configuration of Pool Scenario. The XML labels supported
+	 *            are:
+	 *            <ul>
+	 *            <li><b>full-rescore-period= int</b>, 1 by default</li>
+	 *            <li><b>rescore-fraction= double</b>, 0.1 by default</li>
+	 *            <li><b>exploration-size= int</b>, 0 by default</li>
+	 *            <li><b>staleness-bound= int</b>, 0 by default</li>
+	 *            <li><b>candidate-pool-size= int</b>, 0 by default</li>
+	 *            <li><b>candidate-pool-size[@stratified]= boolean</b>, false by
+	 *            default</li>
+	 *            </ul>
+	 */
+	@Override
+	public void configure(Configuration configuration) {
+
+		super.configure(configuration);
+
+		int fullRescorePeriodT = configuration.getInt("full-rescore-period", fullRescorePeriod);
+
+		if (fullRescorePeriodT < 1) {
+			throw new ConfigurationRuntimeException("\nThe full-rescore-period must be greater than 0");
+		}
+
+		setFullRescorePeriod(fullRescorePeriodT);
+
+		double rescoreFractionT = configuration.getDouble("rescore-fraction", rescoreFraction);
+
+		if (rescoreFractionT < 0 || rescoreFractionT > 1) {
+			throw new ConfigurationRuntimeException("\nThe rescore-fraction must be in [0, 1]");
+		}
+
+		setRescoreFraction(rescoreFractionT);
+
+		int explorationSizeT = configuration.getInt("exploration-size", explorationSize);
+
+		if (explorationSizeT < 0) {
+			throw new ConfigurationRuntimeException("\nThe exploration-size must not be negative");
+		}
+
+		setExplorationSize(explorationSizeT);
+
+		int stalenessBoundT = configuration.getInt("staleness-bound", stalenessBound);
+
+		if (stalenessBoundT < 0) {
+			throw new ConfigurationRuntimeException("\nThe staleness-bound must not be negative");
+		}
+
+		setStalenessBound(stalenessBoundT);
+
+		int candidatePoolSizeT = configuration.getInt("candidate-pool-size", candidatePoolSize);
+
+		if (candidatePoolSizeT < 0) {
+			throw new ConfigurationRuntimeException("\nThe candidate-pool-size must not be negative");
+		}
+
+		if (candidatePoolSizeT > 0 && isStaleScoring()) {
+			throw new ConfigurationRuntimeException(
+					"\nThe candidate-pool-size can not be used with a full-rescore-period greater than 1");
+		}
+
+		setCandidatePoolSize(candidatePoolSizeT);
+
+		setStratified(configuration.getBoolean("candidate-pool-size[@stratified]", stratified));
 	}
 
-}
\ No newline at end of file
+}
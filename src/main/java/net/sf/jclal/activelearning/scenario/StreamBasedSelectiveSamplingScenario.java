@@ -15,19 +15,47 @@
  */
 package net.sf.jclal.activelearning.scenario;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
 import net.sf.jclal.activelearning.batchmode.AbstractBatchMode;
 import net.sf.jclal.activelearning.querystrategy.AbstractQueryStrategy;
+import net.sf.jclal.core.IDataset;
 import net.sf.jclal.util.sort.Container;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.converters.ArffLoader;
 
 /**
  * Implementation of Stream-Based Sampling scenario. This scenario is sometimes
  * called sequential active.
  *
+ * By default the scan of the unlabeled set starts at the first instance in
+ * each iteration. When the rejected instances are discarded, each instance is
+ * examined only once: the instances rejected in an iteration are removed from
+ * the unlabeled set, and the next scan continues after them. In this mode the
+ * unlabeled set can also be fed from a stream (e.g. an ARFF file read
+ * incrementally), and then it only holds a look-ahead buffer of the stream, so
+ * the memory does not depend on the size of the stream. The look-ahead only
+ * bounds the instances read from the stream: the unlabeled set given by the
+ * evaluation method is already in memory, it is examined first and the stream
+ * is not read until it has less than look-ahead instances. The strategies that
+ * keep information about the positions of the whole unlabeled set (e.g.
+ * density diversity) can not be used when the rejected instances are
+ * discarded.
+ *
  * @author Oscar Gabriel Reyes Pupo
  * @author Eduardo Perez Perdomo
  *
@@ -46,6 +74,33 @@ public class StreamBasedSelectiveSamplingScenario extends AbstractScenario {
 	 */
 	private double threshold = 0.5;
 
+	/**
+	 * Whether the instances examined and not selected are removed from the
+	 * unlabeled set.
+	 */
+	private boolean discardRejected = false;
+
+	/**
+	 * The ARFF file read as a stream of unlabeled instances.
+	 */
+	private String streamFile;
+
+	/**
+	 * The number of unlabeled instances up to which the unlabeled set is
+	 * filled from the stream.
+	 */
+	private int lookAhead = 100;
+
+	/**
+	 * The stream of unlabeled instances.
+	 */
+	private transient Iterator<Instance> stream;
+
+	/**
+	 * The number of instances examined in the last selection.
+	 */
+	private int scanned;
+
 	/**
 	 * Get the threshold
 	 *
@@ -67,21 +122,114 @@ public class StreamBasedSelectiveSamplingScenario extends AbstractScenario {
 		this.threshold = threshold;
 	}
 
+	/**
+	 * Return whether the rejected instances are discarded
+	 *
+	 * @return True if the instances examined and not selected are removed
+	 *         from the unlabeled set.
+	 */
+	public boolean isDiscardRejected() {
+		return discardRejected;
+	}
+
+	/**
+	 * Set whether the rejected instances are discarded
+	 *
+	 * @param discardRejected
+	 *            True to remove from the unlabeled set the instances examined
+	 *            and not selected.
+	 */
+	public void setDiscardRejected(boolean discardRejected) {
+		this.discardRejected = discardRejected;
+	}
+
+	/**
+	 * Get the stream file
+	 *
+	 * @return The ARFF file read as a stream of unlabeled instances.
+	 */
+	public String getStreamFile() {
+		return streamFile;
+	}
+
+	/**
+	 * Set the stream file. The rejected instances are discarded.
+	 *
+	 * @param streamFile
+	 *            The ARFF file read as a stream of unlabeled instances, it
+	 *            must have the same attributes as the dataset.
+	 */
+	public void setStreamFile(String streamFile) {
+		this.streamFile = streamFile;
+
+		if (streamFile != null) {
+			setDiscardRejected(true);
+		}
+	}
+
+	/**
+	 * Get the look-ahead
+	 *
+	 * @return The number of unlabeled instances up to which the unlabeled set
+	 *         is filled from the stream.
+	 */
+	public int getLookAhead() {
+		return lookAhead;
+	}
+
+	/**
+	 * Set the look-ahead. No instance is read from the stream while the
+	 * unlabeled set has look-ahead instances or more, so it is the maximum
+	 * number of unlabeled instances in memory once the initial unlabeled set
+	 * has been examined.
+	 *
+	 * @param lookAhead
+	 *            The number of unlabeled instances up to which the unlabeled
+	 *            set is filled from the stream.
+	 */
+	public void setLookAhead(int lookAhead) {
+		this.lookAhead = lookAhead;
+	}
+
+	/**
+	 * Set the stream of unlabeled instances. The rejected instances are
+	 * discarded.
+	 *
+	 * @param stream
+	 *            The stream of unlabeled instances, they must have the same
+	 *            attributes as the dataset.
+	 */
+	public void setStream(Iterator<Instance> stream) {
+		closeStream();
+
+		this.stream = stream;
+
+		if (stream != null) {
+			setDiscardRejected(true);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public void instancesSelection() {
 
+		if (discardRejected) {
+			fillBuffer();
+		}
+
 		Instances unlabelled = getQueryStrategy().getUnlabelledData().getDataset();
 
 		List<Container> selection = new ArrayList<Container>();
 
+		scanned = 0;
+
 		for (int i = 0; i < unlabelled.numInstances(); i++) {
 
-			Instance in = unlabelled.instance(i);
+			scanned = i + 1;
 
-			double test = getQueryStrategy().utilityInstance(in);
+			double test = getQueryStrategy().utilityInstance(i);
 
 			if (getQueryStrategy().isMaximal() && test >= threshold) {
 				selection.add(new Container(test, i));
@@ -98,6 +246,97 @@ public class StreamBasedSelectiveSamplingScenario extends AbstractScenario {
 				.addAll(getBatchMode().instancesSelection(getQueryStrategy(), selection));
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * When the rejected instances are discarded, the instances examined in the
+	 * last selection are removed and the buffer is filled from the stream.
+	 */
+	@Override
+	public void updateLabelledData() {
+
+		int selected = ((AbstractQueryStrategy) getQueryStrategy()).getSelectedInstances().size();
+
+		super.updateLabelledData();
+
+		if (discardRejected) {
+
+			// the examined instances were at the beginning of the unlabeled
+			// set, the rejected ones are there after removing the selected
+			// ones
+			int[] rejected = new int[Math.max(0, scanned - selected)];
+
+			for (int i = 0; i < rejected.length; i++) {
+				rejected[i] = i;
+			}
+
+			getQueryStrategy().getUnlabelledData().removeIndexes(rejected);
+
+			scanned = 0;
+
+			fillBuffer();
+		}
+	}
+
+	/**
+	 * Add instances from the stream to the unlabeled set until it has
+	 * look-ahead instances or the stream ends.
+	 */
+	private void fillBuffer() {
+
+		if (stream == null && streamFile != null) {
+
+			try {
+				stream = new ArffInstanceIterator(new File(streamFile),
+						getQueryStrategy().getUnlabelledData().getDataset());
+			} catch (IOException e) {
+				Logger.getLogger(StreamBasedSelectiveSamplingScenario.class.getName()).log(Level.SEVERE, null, e);
+				streamFile = null;
+			}
+		}
+
+		if (stream == null) {
+			return;
+		}
+
+		IDataset unlabelled = getQueryStrategy().getUnlabelledData();
+
+		while (unlabelled.getNumInstances() < lookAhead && stream.hasNext()) {
+			unlabelled.add(stream.next());
+		}
+
+		if (!stream.hasNext()) {
+			closeStream();
+		}
+	}
+
+	/**
+	 * Close the stream if it reads a file.
+	 */
+	private void closeStream() {
+
+		if (stream instanceof Closeable) {
+			try {
+				((Closeable) stream).close();
+			} catch (IOException e) {
+				Logger.getLogger(StreamBasedSelectiveSamplingScenario.class.getName()).log(Level.SEVERE, null, e);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The file of the stream is closed.
+	 */
+	@Override
+	public void algorithmFinished() {
+
+		super.algorithmFinished();
+
+		closeStream();
+	}
+
 	/**
 	 *
 	 * @param configuration
@@ -105,6 +344,12 @@ public class StreamBasedSelectiveSamplingScenario extends AbstractScenario {
 	 *            are:
 	 *            <ul>
 	 *            <li><b>threshold= double</b></li>
+	 *            <li><b>discard-rejected= boolean</b>, false by default</li>
+	 *            <li><b>stream-file= path</b>, an ARFF file with the same
+	 *            attributes as the dataset, the rejected instances are
+	 *            discarded</li>
+	 *            <li><b>look-ahead= int</b>, 100 by default, the unlabeled set
+	 *            is filled from the stream up to this number of instances</li>
 	 *            </ul>
 	 */
 	@Override
@@ -116,5 +361,115 @@ public class StreamBasedSelectiveSamplingScenario extends AbstractScenario {
 		double thresholdT = configuration.getDouble("threshold", threshold);
 
 		setThreshold(thresholdT);
+
+		setDiscardRejected(configuration.getBoolean("discard-rejected", discardRejected));
+
+		setStreamFile(configuration.getString("stream-file", streamFile));
+
+		int lookAheadT = configuration.getInt("look-ahead", lookAhead);
+
+		if (lookAheadT < 1) {
+			throw new ConfigurationRuntimeException("\nThe look-ahead must be greater than 0");
+		}
+
+		setLookAhead(lookAheadT);
+	}
+
+	/**
+	 * Iterator over the instances of an ARFF file, read incrementally. The file
+	 * is closed when the last instance is read.
+	 */
+	private static class ArffInstanceIterator implements Iterator<Instance>, Closeable {
+
+		private InputStream input;
+
+		private ArffLoader loader;
+
+		private Instances structure;
+
+		private Instance next;
+
+		ArffInstanceIterator(File file, Instances header) throws IOException {
+
+			input = new BufferedInputStream(new FileInputStream(file));
+
+			try {
+				if (file.getName().endsWith(".gz")) {
+					input = new GZIPInputStream(input);
+				}
+
+				loader = new ArffLoader();
+				loader.setSource(input);
+
+				structure = loader.getStructure();
+				structure.setClassIndex(header.classIndex());
+
+				if (!structure.equalHeaders(header)) {
+					throw new IOException("The stream file is not compatible with the dataset: "
+							+ structure.equalHeadersMsg(header));
+				}
+
+				next = loader.getNextInstance(structure);
+
+			} catch (IOException e) {
+				close();
+				throw e;
+			}
+
+			if (next == null) {
+				close();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Instance next() {
+
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+
+			Instance current = next;
+
+			try {
+				next = loader.getNextInstance(structure);
+			} catch (IOException e) {
+				Logger.getLogger(ArffInstanceIterator.class.getName()).log(Level.SEVERE, null, e);
+				next = null;
+			}
+
+			if (next == null) {
+				try {
+					close();
+				} catch (IOException e) {
+					Logger.getLogger(ArffInstanceIterator.class.getName()).log(Level.SEVERE, null, e);
+				}
+			}
+
+			return current;
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			next = null;
+
+			if (input != null) {
+				try {
+					input.close();
+				} finally {
+					input = null;
+				}
+			}
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
 	}
 }
@@ -19,11 +19,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sf.jclal.activelearning.querystrategy.AbstractQueryStrategy;
 import net.sf.jclal.core.IClassifier;
 import net.sf.jclal.core.IConfigure;
 import net.sf.jclal.core.IDataset;
 import net.sf.jclal.core.IQueryStrategy;
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
+import net.sf.jclal.util.distancefunction.DistanceCache;
 import net.sf.jclal.util.distancefunction.DistanceContainer;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
@@ -74,6 +76,12 @@ public class DensityDiversityQueryStrategy extends AbstractSingleLabelQueryStrat
 	// memory
 	private boolean matrixOverFile = false;
 
+	// It stores whether the distances in main memory are stored as float
+	private boolean singlePrecisionDistances = false;
+
+	// The directory of the persistent distance cache, null if it is not used
+	private String distanceCache;
+
 	/**
 	 * Empty(default) constructor.
 	 */
@@ -110,6 +118,35 @@ public class DensityDiversityQueryStrategy extends AbstractSingleLabelQueryStrat
 		subQueryStrategy.testModel();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The test of the model of the sub query strategy is started, it is only
+	 * supported if the sub query strategy is an AbstractQueryStrategy.
+	 */
+	@Override
+	public boolean startTestModel() {
+
+		if (subQueryStrategy instanceof AbstractQueryStrategy) {
+			return ((AbstractQueryStrategy) subQueryStrategy).startTestModel();
+		}
+
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long getTestModelTime() {
+
+		if (subQueryStrategy instanceof AbstractQueryStrategy) {
+			return ((AbstractQueryStrategy) subQueryStrategy).getTestModelTime();
+		}
+
+		return super.getTestModelTime();
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -134,6 +171,14 @@ public class DensityDiversityQueryStrategy extends AbstractSingleLabelQueryStrat
 		return subQueryStrategy.distributionForInstance(instance);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double[] distributionForInstance(int instanceIndex) {
+		return subQueryStrategy.distributionForInstance(instanceIndex);
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -231,23 +276,34 @@ public class DensityDiversityQueryStrategy extends AbstractSingleLabelQueryStrat
 	 * {@inheritDoc}
 	 */
 	@Override
-	public double[] testUnlabeledData() {
+	public double[] testUnlabeledData(int[] positions) {
 		/**
 		 * Compute the distance just once in each active learning iteration the
 		 * distance among the instances of the unlabeled set are calculated
 		 */
 		Instances unlabelled = subQueryStrategy.getUnlabelledData().getDataset();
 		
+		if (distanceValues == null && distanceCache != null) {
+			try {
+				distanceValues = new DistanceCache(distanceCache).getContainer(unlabelled, typeOfDistance,
+						isParallel(), subQueryStrategy.getLabelledData().getDataset());
+			} catch (Exception ex) {
+				Logger.getLogger(DensityDiversityQueryStrategy.class.getName()).log(Level.WARNING,
+						"The distance cache can not be used, the distances are computed", ex);
+			}
+		}
+
 		if (distanceValues == null) {
 			typeOfDistance.setInstances(unlabelled);
 			try {
-				distanceValues = new DistanceContainer(unlabelled, typeOfDistance, matrixOverFile);
+				distanceValues = new DistanceContainer(unlabelled, typeOfDistance, matrixOverFile, isParallel(),
+						singlePrecisionDistances);
 			} catch (Exception ex) {
 				Logger.getLogger(DensityDiversityQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
 			}
 		}
 
-		return super.testUnlabeledData();
+		return super.testUnlabeledData(positions);
 	}
 
 	/**
@@ -258,13 +314,24 @@ public class DensityDiversityQueryStrategy extends AbstractSingleLabelQueryStrat
 
 		Instances unlabelled = subQueryStrategy.getUnlabelledData().getDataset();
 
+		return utilityInstance(unlabelled.indexOf(instance));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double utilityInstance(int instanceIndex) {
+
+		Instances unlabelled = subQueryStrategy.getUnlabelledData().getDataset();
+
 		int sizeUnlabeledData = unlabelled.numInstances();
 
 		// Step1
 		double step1;
 
 		// standard values
-		step1 = subQueryStrategy.utilityInstance(instance);
+		step1 = subQueryStrategy.utilityInstance(instanceIndex);
 
 		// If the utility is equal to 0 then the rest of the process is
 		// unnecessary
@@ -280,9 +347,7 @@ public class DensityDiversityQueryStrategy extends AbstractSingleLabelQueryStrat
 		}
 
 		// Step 2
-		int indexOfInstance = unlabelled.indexOf(instance);
-
-		double step2 = distanceValues.getAcumulativeValue(indexOfInstance);
+		double step2 = distanceValues.getAcumulativeValue(instanceIndex);
 
 		// step2 is divided by U=numInstancesUnlabeled
 		step2 /= sizeUnlabeledData;
@@ -377,6 +442,11 @@ public class DensityDiversityQueryStrategy extends AbstractSingleLabelQueryStrat
 	 *            </p>
 	 *            </li>
 	 *            <li>matrix-file= boolean</li>
+	 *            <li>single-precision-distances= boolean, the distances in
+	 *            main memory are stored as float, false by default</li>
+	 *            <li>distance-cache= String, directory of a persistent cache
+	 *            of the distances among the labeled and unlabeled instances,
+	 *            not used by default</li>
 	 *            <li><b>sub-query-strategy type= class</b>
 	 *            <p>
 	 *            Package: net.sf.jclal.activelearning.querystrategy
@@ -459,6 +529,60 @@ public class DensityDiversityQueryStrategy extends AbstractSingleLabelQueryStrat
 		boolean matrixFile = configuration.getBoolean("matrix-file", matrixOverFile);
 
 		setMatrixOverFile(matrixFile);
+
+		// Set if the distances are stored in single precision
+		setSinglePrecisionDistances(configuration.getBoolean("single-precision-distances",
+				singlePrecisionDistances));
+
+		// Set the directory of the distance cache
+		setDistanceCache(configuration.getString("distance-cache", distanceCache));
+	}
+
+	/**
+	 * Set the directory of a persistent cache of the distances. The distances
+	 * among the labeled and unlabeled instances, with the attribute ranges of
+	 * both sets, are computed once and shared by the runs over the same
+	 * labeled and unlabeled instances, i.e. the same split. The test
+	 * instances are not used. Each fold and each seed that changes the split
+	 * stores its own file, the files of the cache are never removed and the
+	 * directory must be cleaned manually. The
+	 * matrix-file and single-precision-distances options are not used with the
+	 * cache.
+	 *
+	 * @param distanceCache
+	 *            The directory, null to compute the distances in each run
+	 */
+	public void setDistanceCache(String distanceCache) {
+		this.distanceCache = distanceCache;
+	}
+
+	/**
+	 * Get the directory of the persistent cache of the distances.
+	 *
+	 * @return The directory, null if the cache is not used
+	 */
+	public String getDistanceCache() {
+		return distanceCache;
+	}
+
+	/**
+	 * Set whether the distances in main memory are stored as float, which
+	 * halves the memory of the distance matrix.
+	 *
+	 * @param singlePrecisionDistances
+	 *            The flag
+	 */
+	public void setSinglePrecisionDistances(boolean singlePrecisionDistances) {
+		this.singlePrecisionDistances = singlePrecisionDistances;
+	}
+
+	/**
+	 * Get whether the distances in main memory are stored as float.
+	 *
+	 * @return The flag
+	 */
+	public boolean isSinglePrecisionDistances() {
+		return singlePrecisionDistances;
 	}
 
 	/**
@@ -15,7 +15,6 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import weka.core.Instance;
 
 /**
  * Implementation of Entropy Sampling Strategy (Uncertainty Sampling) query
@@ -46,12 +45,10 @@ public class EntropySamplingQueryStrategy extends UncertaintySamplingQueryStrate
 	 * {@inheritDoc}
 	 */
 	@Override
-	public double utilityInstance(Instance instance) {
+	protected double utilityDistribution(double[] probabilities) {
 
 		double sumatoria = 0;
 
-		double[] probabilities = distributionForInstance(instance);
-
 		double log;
 
 		for (double current : probabilities) {
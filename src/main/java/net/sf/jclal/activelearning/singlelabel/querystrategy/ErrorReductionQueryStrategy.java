@@ -15,6 +15,31 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.sf.jclal.core.IClassifier;
+import net.sf.jclal.core.IDataset;
+import net.sf.jclal.core.IRandGen;
+import net.sf.jclal.core.ISystem;
+import net.sf.jclal.classifier.WekaClassifier;
+import net.sf.jclal.core.ITool;
+import net.sf.jclal.dataset.WekaDataset;
+import net.sf.jclal.util.dataset.DatasetUtils;
+import net.sf.jclal.util.sort.OrderUtils;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationRuntimeException;
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.bayes.NaiveBayesMultinomialUpdateable;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
+import weka.core.ContingencyTables;
+import weka.core.Instance;
+import weka.core.Instances;
+
 /**
  * Abstract class for Error Reduction family of query strategies. All the query
  * strategies that belong to ErrorReduction category must be extend this class.
@@ -25,16 +50,120 @@ package net.sf.jclal.activelearning.singlelabel.querystrategy;
  * Burr Settles. Active Learning Literature Survey. Computer Sciences Technical
  * Report 1648, University ofWisconsin–Madison. 2009.
  *
+ * The models trained with a hypothetical labeled instance are built by
+ * {@link #trainWithInstance(int, int)}. Each task of the grid of retrainings
+ * keeps its own copy of the labeled set, with a last slot for the hypothetical
+ * instance, and its own classifier, so the datasets are not copied for each
+ * candidate and class. If incremental-retrain is enabled and the classifier
+ * is NaiveBayesUpdateable or NaiveBayesMultinomialUpdateable, each task trains
+ * its model once, and the hypothetical instance is added to the model and
+ * removed from it with the opposite weight, so its cost does not depend on
+ * the size of the labeled set. The other updateable classifiers can not
+ * remove an instance in this way (e.g. IBk keeps it, SGD or HoeffdingTree can
+ * not undo an update), so they are always rebuilt. The models updated in this
+ * way are not the same as the rebuilt ones, e.g. the numeric precision of
+ * NaiveBayesUpdateable is the one of the labeled set, so the utilities are an
+ * approximation and this mode is disabled by default.
+ *
+ * The unlabeled instances are tested as a grid of (candidate, class)
+ * retrainings, which are processed in parallel if the query strategy is
+ * parallel. The expected losses are combined per candidate after all the
+ * retrainings, always in the same order, so the utilities do not depend on
+ * the scheduling of the threads. The grid is split in one range per task, and
+ * there are as many tasks as threads in the shared pool, or
+ * max-concurrent-retrains if it is lower. So it bounds the number of
+ * retrainings done at the same time and the number of copies of the labeled
+ * set and the classifier, which are released when the utilities are
+ * computed.
+ *
+ * Two approximations can be enabled: the loss can be estimated on a random
+ * sample of the unlabeled set (loss-sample-size), and only the most uncertain
+ * candidates according to the current model can be evaluated
+ * (prefilter-size).
+ *
+ * When only some candidates of the unlabeled set are scored (e.g. the
+ * candidate-pool-size of the pool-based scenario), only the candidates are
+ * retrained, but the expected loss of each retraining is still summed over
+ * the whole unlabeled set, so the cost of each candidate depends on the size
+ * of the unlabeled set unless loss-sample-size is set.
+ *
+ * If only the best candidates are needed (pruning-top-k), the classes of each
+ * candidate are processed from the most to the least probable, and the
+ * candidate is abandoned as soon as its partial expected loss plus the
+ * probability mass of the classes not processed yet by
+ * {@link #lossLowerBound()} is greater than the current k-th best utility.
+ * The k-th best utility is shared by the threads without locks. The abandoned
+ * candidates get the worst utility, the utilities of the other candidates are
+ * the same as without pruning. Only the k best candidates are right, so
+ * pruning-top-k must not be lower than the batch size, the scenario rejects
+ * such a configuration.
  *
  * @author Oscar Gabriel Reyes Pupo
  * @author Maria del Carmen Rodriguez Hernandez
  * @author Eduardo Perez Perdomo
  *
  */
-public abstract class ErrorReductionQueryStrategy extends AbstractSingleLabelQueryStrategy {
+public abstract class ErrorReductionQueryStrategy extends AbstractSingleLabelQueryStrategy implements ITool {
 
     private static final long serialVersionUID = -1290150080123319178L;
 
+    /**
+     * The version of the labeled set, it is increased when the labeled set
+     * changes.
+     */
+    private int labeledVersion;
+
+    /**
+     * The training view of the task of the grid that runs in each thread, null
+     * outside of the tasks.
+     */
+    private static final ThreadLocal<TrainingView> VIEW = new ThreadLocal<TrainingView>();
+
+    /**
+     * The maximum number of retrainings done at the same time, 0 means one
+     * per thread of the shared pool.
+     */
+    private int maxConcurrentRetrains = 0;
+
+    /**
+     * The number of unlabeled instances where the loss is estimated, 0 means
+     * the whole unlabeled set.
+     */
+    private int lossSampleSize = 0;
+
+    /**
+     * The number of most uncertain candidates that are evaluated, 0 means all
+     * of them.
+     */
+    private int prefilterSize = 0;
+
+    /**
+     * The number of best candidates that are needed, the other candidates can
+     * be abandoned before all their retrainings. 0 means no pruning.
+     */
+    private int pruningTopK = 0;
+
+    /**
+     * Whether the classifiers that support it are updated with the
+     * hypothetical instance instead of rebuilt.
+     */
+    private boolean incrementalRetrain = false;
+
+    /**
+     * The current sample of the unlabeled set.
+     */
+    private int[] lossSample;
+
+    /**
+     * The version of the labeled set when the sample was drawn.
+     */
+    private int lossSampleVersion;
+
+    /**
+     * The random numbers generator, used to draw the sample.
+     */
+    private IRandGen randgen;
+
     /**
      * Empty(default) constructor.
      */
@@ -43,4 +172,727 @@ public abstract class ErrorReductionQueryStrategy extends AbstractSingleLabelQue
         //By default this type of query strategy is minimalistic
         setMaximal(false);
     }
-}
\ No newline at end of file
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void training() {
+
+        ++labeledVersion;
+
+        super.training();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void updateLabeledData() {
+
+        super.updateLabeledData();
+
+        ++labeledVersion;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The utility is the expected loss over the classes, weighted with the
+     * probabilities given by the current model.
+     */
+    @Override
+    public double utilityInstance(int instanceIndex) {
+        return expectedUtilities(new int[]{instanceIndex})[0];
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The expected losses of all the pairs (candidate, class) are computed
+     * first, and then they are combined per candidate. If the pre-filter is
+     * used, only the most uncertain candidates are evaluated.
+     */
+    @Override
+    public double[] testUnlabeledData(int[] positions) {
+
+        final int[] candidates;
+
+        if (positions == null) {
+            candidates = new int[getUnlabelledData().getNumInstances()];
+
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = i;
+            }
+        } else {
+            candidates = positions;
+        }
+
+        if (prefilterSize <= 0 || prefilterSize >= candidates.length) {
+            return expectedUtilities(candidates);
+        }
+
+        // cheap pre-pass, only the most uncertain candidates are evaluated
+        double[] uncertainty = new double[candidates.length];
+
+        for (int i = 0; i < candidates.length; i++) {
+            uncertainty[i] = ContingencyTables.entropy(distributionForInstance(candidates[i]));
+        }
+
+        int[] best = OrderUtils.selectBest(uncertainty, prefilterSize, true, isParallel());
+
+        Arrays.sort(best);
+
+        int[] evaluated = new int[best.length];
+
+        for (int i = 0; i < best.length; i++) {
+            evaluated[i] = candidates[best[i]];
+        }
+
+        double[] utilities = expectedUtilities(evaluated);
+
+        // the candidates discarded by the pre-pass are the worst ones
+        double[] values = new double[candidates.length];
+
+        Arrays.fill(values, isMaximal() ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+
+        for (int i = 0; i < best.length; i++) {
+            values[best[i]] = utilities[i];
+        }
+
+        return values;
+    }
+
+    /**
+     * Compute the utility of the candidates with the grid of retrainings.
+     *
+     * @param candidates
+     *            The positions of the candidates in the unlabeled set.
+     * @return The utility of each candidate.
+     */
+    private double[] expectedUtilities(final int[] candidates) {
+
+        // the bound is only valid when the lower utilities are the best ones
+        if (pruningTopK > 0 && pruningTopK < candidates.length && !isMaximal()) {
+            return prunedUtilities(candidates);
+        }
+
+        final int numClasses = getLabelledData().getDataset().numClasses();
+
+        final double[] losses = new double[candidates.length * numClasses];
+
+        retrainingTasks(losses.length, new RangeTask() {
+
+            @Override
+            public void compute(int begin, int end) {
+                for (int t = begin; t < end; t++) {
+                    losses[t] = expectedLoss(candidates[t / numClasses], t % numClasses);
+                }
+            }
+        });
+
+        double[] values = new double[candidates.length];
+
+        for (int i = 0; i < candidates.length; i++) {
+
+            try {
+                double[] probabilities = distributionForInstance(candidates[i]);
+
+                for (int c = 0; c < probabilities.length && c < numClasses; c++) {
+                    values[i] += probabilities[c] * losses[i * numClasses + c];
+                }
+
+            } catch (Exception ex) {
+                Logger.getLogger(ErrorReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Compute the utility of the candidates abandoning the ones that can not
+     * be among the pruningTopK best. The expected loss of each class not
+     * processed yet is at least {@link #lossLowerBound()}, so the partial sum
+     * of a candidate plus the probability of those classes by that bound is a
+     * lower bound of its utility.
+     *
+     * @param candidates
+     *            The positions of the candidates in the unlabeled set.
+     * @return The utility of each candidate, the abandoned ones get positive
+     *         infinity.
+     */
+    private double[] prunedUtilities(final int[] candidates) {
+
+        final int numClasses = getLabelledData().getDataset().numClasses();
+
+        final double[] values = new double[candidates.length];
+
+        // the k-th best utility found by any thread, it only decreases
+        final AtomicLong kthBest = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+
+        retrainingTasks(candidates.length, new RangeTask() {
+
+            @Override
+            public void compute(int begin, int end) {
+
+                // the best utilities of this chunk, in ascending order
+                double[] best = new double[pruningTopK];
+                int count = 0;
+
+                for (int i = begin; i < end; i++) {
+
+                    try {
+                        double[] probabilities = distributionForInstance(candidates[i]);
+
+                        int length = Math.min(probabilities.length, numClasses);
+
+                        // the most probable classes first, the bound grows
+                        // faster
+                        double[] negated = new double[length];
+
+                        for (int c = 0; c < length; c++) {
+                            negated[c] = -probabilities[c];
+                        }
+
+                        int[] order = OrderUtils.selectBest(negated, length, false, false);
+
+                        // the probability of the classes not processed yet
+                        // before each step
+                        double[] remaining = new double[length + 1];
+
+                        for (int o = length - 1; o >= 0; o--) {
+                            remaining[o] = remaining[o + 1] + probabilities[order[o]];
+                        }
+
+                        double minimumLoss = lossLowerBound();
+
+                        double[] losses = new double[length];
+
+                        double partial = 0;
+
+                        boolean pruned = false;
+
+                        for (int o = 0; o < length; o++) {
+
+                            int c = order[o];
+
+                            losses[c] = expectedLoss(candidates[i], c);
+
+                            partial += probabilities[c] * losses[c];
+
+                            double bound = partial + remaining[o + 1] * minimumLoss;
+
+                            double threshold = Double.longBitsToDouble(kthBest.get());
+
+                            // a small margin covers the rounding of the sum
+                            // in a different order
+                            if (bound > threshold + Math.abs(threshold) * 1e-12) {
+                                pruned = true;
+                                break;
+                            }
+                        }
+
+                        if (pruned) {
+                            values[i] = Double.POSITIVE_INFINITY;
+                            continue;
+                        }
+
+                        // summed in the class order, as without pruning
+                        double value = 0;
+
+                        for (int c = 0; c < length; c++) {
+                            value += probabilities[c] * losses[c];
+                        }
+
+                        values[i] = value;
+
+                        if (count < best.length || value < best[count - 1]) {
+
+                            int j = count < best.length ? count++ : count - 1;
+
+                            while (j > 0 && best[j - 1] > value) {
+                                best[j] = best[j - 1];
+                                j--;
+                            }
+
+                            best[j] = value;
+
+                            // the k-th best of the chunk bounds the global one
+                            if (count == best.length) {
+                                lowerBound(kthBest, best[count - 1]);
+                            }
+                        }
+
+                    } catch (Exception ex) {
+                        Logger.getLogger(ErrorReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+                    }
+                }
+            }
+        });
+
+        return values;
+    }
+
+    /**
+     * Execute the task over the range [0, length) split in one range per
+     * retraining task. There are as many tasks as threads in the shared pool,
+     * or maxConcurrentRetrains if it is lower, and each one has its own
+     * training view, which is not used after the call.
+     *
+     * @param length
+     *            The length of the range.
+     * @param task
+     *            The task to execute.
+     */
+    private void retrainingTasks(final int length, final RangeTask task) {
+
+        int tasks = ParallelControl.getCores(isParallel());
+
+        if (maxConcurrentRetrains > 0) {
+            tasks = Math.min(tasks, maxConcurrentRetrains);
+        }
+
+        final int count = Math.max(1, Math.min(tasks, length));
+
+        ParallelControl.forRange(0, count, 1, isParallel(), new RangeTask() {
+
+            @Override
+            public void compute(int begin, int end) {
+
+                TrainingView previous = VIEW.get();
+
+                VIEW.set(new TrainingView());
+
+                try {
+                    for (int t = begin; t < end; t++) {
+                        task.compute((int) ((long) length * t / count), (int) ((long) length * (t + 1) / count));
+                    }
+                } finally {
+                    if (previous == null) {
+                        VIEW.remove();
+                    } else {
+                        VIEW.set(previous);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * A lower bound of the expected loss of a model trained with any
+     * hypothetical instance, used by the pruning of the candidates. The losses
+     * of this package are 0 when the model is certain of every unlabeled
+     * instance, so no positive bound holds for every candidate and 0 is used,
+     * then only the processed classes count. A subclass whose loss has a
+     * known positive minimum can return it to abandon the candidates earlier.
+     *
+     * @return The minimum expected loss, not negative.
+     */
+    protected double lossLowerBound() {
+        return 0;
+    }
+
+    /**
+     * Decrease the shared value if the given one is lower.
+     *
+     * @param shared
+     *            The bits of the shared value.
+     * @param value
+     *            The candidate value.
+     */
+    private static void lowerBound(AtomicLong shared, double value) {
+
+        long current = shared.get();
+
+        while (value < Double.longBitsToDouble(current)) {
+
+            if (shared.compareAndSet(current, Double.doubleToLongBits(value))) {
+                return;
+            }
+
+            current = shared.get();
+        }
+    }
+
+    /**
+     * Returns the expected loss over the unlabeled set when the instance is
+     * added to the labeled set with the given class.
+     *
+     * @param instanceToAdd
+     *            The position of the instance in the unlabeled set.
+     * @param classValue
+     *            The class value.
+     * @return The expected loss, the lower the value the greater the
+     *         information.
+     */
+    protected abstract double expectedLoss(int instanceToAdd, int classValue);
+
+    /**
+     * Get the positions of the unlabeled set where the loss is estimated. The
+     * sample is drawn again when the labeled set changes.
+     *
+     * @return The positions in ascending order, or null if the loss is
+     *         computed over the whole unlabeled set.
+     */
+    protected synchronized int[] getLossPositions() {
+
+        int n = getUnlabelledData().getNumInstances();
+
+        if (lossSampleSize <= 0 || lossSampleSize >= n) {
+            return null;
+        }
+
+        if (lossSample == null || lossSampleVersion != labeledVersion) {
+
+            lossSample = DatasetUtils.samplePositions(randgen, n, lossSampleSize);
+
+            lossSampleVersion = labeledVersion;
+        }
+
+        return lossSample;
+    }
+
+    /**
+     * Scale a loss estimated over a sample to the size of the unlabeled set.
+     *
+     * @param loss
+     *            The loss summed over the evaluated instances.
+     * @param evaluated
+     *            The number of evaluated instances.
+     * @return The estimated loss over the unlabeled set without the candidate.
+     */
+    protected double scaleLoss(double loss, int evaluated) {
+
+        int n = getUnlabelledData().getNumInstances();
+
+        if (lossSampleSize <= 0 || lossSampleSize >= n || evaluated == 0) {
+            return loss;
+        }
+
+        return loss * (n - 1) / evaluated;
+    }
+
+    /**
+     * Get the maximum number of retrainings done at the same time
+     *
+     * @return The maximum number of retrainings, 0 means one per thread.
+     */
+    public int getMaxConcurrentRetrains() {
+        return maxConcurrentRetrains;
+    }
+
+    /**
+     * Set the maximum number of retrainings done at the same time
+     *
+     * @param maxConcurrentRetrains
+     *            The maximum number of retrainings, 0 means one per thread.
+     */
+    public void setMaxConcurrentRetrains(int maxConcurrentRetrains) {
+        this.maxConcurrentRetrains = maxConcurrentRetrains;
+    }
+
+    /**
+     * Get the size of the sample where the loss is estimated
+     *
+     * @return The size of the sample, 0 means the whole unlabeled set.
+     */
+    public int getLossSampleSize() {
+        return lossSampleSize;
+    }
+
+    /**
+     * Set the size of the sample where the loss is estimated
+     *
+     * @param lossSampleSize
+     *            The size of the sample, 0 means the whole unlabeled set.
+     */
+    public void setLossSampleSize(int lossSampleSize) {
+        this.lossSampleSize = lossSampleSize;
+    }
+
+    /**
+     * Get the number of most uncertain candidates that are evaluated
+     *
+     * @return The number of candidates, 0 means all of them.
+     */
+    public int getPrefilterSize() {
+        return prefilterSize;
+    }
+
+    /**
+     * Set the number of most uncertain candidates that are evaluated
+     *
+     * @param prefilterSize
+     *            The number of candidates, 0 means all of them.
+     */
+    public void setPrefilterSize(int prefilterSize) {
+        this.prefilterSize = prefilterSize;
+    }
+
+    /**
+     * Get the number of best candidates that are needed
+     *
+     * @return The number of candidates, 0 means no pruning.
+     */
+    public int getPruningTopK() {
+        return pruningTopK;
+    }
+
+    /**
+     * Set the number of best candidates that are needed, usually the batch
+     * size. It must not be lower than the batch size, otherwise abandoned
+     * candidates would be selected.
+     *
+     * @param pruningTopK
+     *            The number of candidates, 0 means no pruning.
+     */
+    public void setPruningTopK(int pruningTopK) {
+        this.pruningTopK = pruningTopK;
+    }
+
+    /**
+     * Get whether the classifiers that support it are updated with the
+     * hypothetical instance instead of rebuilt
+     *
+     * @return The flag.
+     */
+    public boolean isIncrementalRetrain() {
+        return incrementalRetrain;
+    }
+
+    /**
+     * Set whether the classifiers that support it, NaiveBayesUpdateable and
+     * NaiveBayesMultinomialUpdateable, are updated with the hypothetical
+     * instance instead of rebuilt
+     *
+     * @param incrementalRetrain
+     *            The flag.
+     */
+    public void setIncrementalRetrain(boolean incrementalRetrain) {
+        this.incrementalRetrain = incrementalRetrain;
+    }
+
+    /**
+     * Contextualize the random generator.
+     *
+     * @param context
+     *            The context to use.
+     */
+    @Override
+    public void contextualize(ISystem context) {
+
+        // the generator is only created if it is used, so the other random
+        // sequences of the experiment do not change
+        if (lossSampleSize > 0) {
+            randgen = context.createRandGen();
+        }
+    }
+
+    /**
+     * @param configuration
+     *            The configuration of the error reduction query strategy.
+     *
+     *            The XML labels supported are:
+     *            <ul>
+     *            <li><b>max-concurrent-retrains= int</b>, the maximum number
+     *            of retraining tasks, 0 by default (one per thread)</li>
+     *            <li><b>loss-sample-size= int</b>, the loss is estimated on a
+     *            random sample of the unlabeled set of this size, drawn in
+     *            each iteration, 0 by default</li>
+     *            <li><b>prefilter-size= int</b>, only this number of the most
+     *            uncertain candidates are evaluated, 0 by default</li>
+     *            <li><b>pruning-top-k= int</b>, the candidates that can not
+     *            be among this number of best ones are abandoned, it must
+     *            not be lower than the batch size, 0 by default</li>
+     *            <li><b>incremental-retrain= boolean</b>, the
+     *            NaiveBayesUpdateable and NaiveBayesMultinomialUpdateable
+     *            classifiers are updated with the hypothetical instance
+     *            instead of rebuilt, false by default</li>
+     *            </ul>
+     */
+    @Override
+    public void configure(Configuration configuration) {
+
+        super.configure(configuration);
+
+        int maxConcurrentRetrainsT = configuration.getInt("max-concurrent-retrains", maxConcurrentRetrains);
+
+        if (maxConcurrentRetrainsT < 0) {
+            throw new ConfigurationRuntimeException("\nThe max-concurrent-retrains must not be negative");
+        }
+
+        setMaxConcurrentRetrains(maxConcurrentRetrainsT);
+
+        int lossSampleSizeT = configuration.getInt("loss-sample-size", lossSampleSize);
+
+        if (lossSampleSizeT < 0) {
+            throw new ConfigurationRuntimeException("\nThe loss-sample-size must not be negative");
+        }
+
+        setLossSampleSize(lossSampleSizeT);
+
+        int prefilterSizeT = configuration.getInt("prefilter-size", prefilterSize);
+
+        if (prefilterSizeT < 0) {
+            throw new ConfigurationRuntimeException("\nThe prefilter-size must not be negative");
+        }
+
+        setPrefilterSize(prefilterSizeT);
+
+        int pruningTopKT = configuration.getInt("pruning-top-k", pruningTopK);
+
+        if (pruningTopKT < 0) {
+            throw new ConfigurationRuntimeException("\nThe pruning-top-k must not be negative");
+        }
+
+        setPruningTopK(pruningTopKT);
+
+        setIncrementalRetrain(configuration.getBoolean("incremental-retrain", incrementalRetrain));
+    }
+
+    /**
+     * Train a model with the labeled set plus an unlabeled instance labeled
+     * with the given class. The model is rebuilt from scratch, as the
+     * classifier of the query strategy, unless incremental-retrain is enabled
+     * and the update of the classifier can be reverted (see
+     * {@link #isRevertible(Classifier)}). In that case the model trained with
+     * the labeled set is updated with the instance, and the update is
+     * reverted in the next call, with the same instance with the opposite
+     * weight. The numeric precision of these models is the one of the labeled
+     * set.
+     *
+     * @param instanceToAdd
+     *            The position of the instance in the unlabeled set.
+     * @param classValue
+     *            The class assigned to the instance.
+     * @return The trained model. It belongs to the current retraining task and
+     *         it is reused by its next call, so it must not be stored.
+     * @throws Exception
+     *             If the model can not be trained.
+     */
+    protected IClassifier trainWithInstance(int instanceToAdd, int classValue) throws Exception {
+
+        TrainingView view = getTrainingView();
+
+        if (view.updateable != null) {
+
+            // the instance of the previous call is removed from the model
+            if (view.pending != null) {
+                view.pending.setWeight(-view.pending.weight());
+                view.updateable.updateClassifier(view.pending);
+                view.pending = null;
+            }
+
+            Instance instance = (Instance) getUnlabelledData().instance(instanceToAdd).copy();
+
+            instance.setClassValue(classValue);
+
+            view.updateable.updateClassifier(instance);
+
+            view.pending = instance;
+
+            return view.classifier;
+        }
+
+        Instances train = view.labeled.getDataset();
+
+        int last = train.numInstances() - 1;
+
+        // the instance is copied in the last slot
+        train.set(last, getUnlabelledData().instance(instanceToAdd));
+
+        train.instance(last).setClassValue(classValue);
+
+        view.classifier.buildClassifier(view.labeled);
+
+        return view.classifier;
+    }
+
+    /**
+     * Get the training view of the current retraining task. Outside of the
+     * tasks a new view is used in each call.
+     */
+    private TrainingView getTrainingView() throws Exception {
+
+        TrainingView view = VIEW.get();
+
+        if (view == null) {
+            view = new TrainingView();
+        }
+
+        if (view.classifier == null) {
+            view.classifier = getClassifier().makeCopy();
+
+            if (incrementalRetrain && view.classifier instanceof WekaClassifier
+                    && isRevertible(((WekaClassifier) view.classifier).getClassifier())) {
+                view.updateable = (UpdateableClassifier) ((WekaClassifier) view.classifier).getClassifier();
+            }
+        }
+
+        if (view.updateable != null) {
+
+            // the model of the labeled set, updated with each instance
+            if (!view.trained) {
+
+                view.classifier.buildClassifier(getLabelledData());
+
+                view.pending = null;
+
+                view.trained = true;
+            }
+
+            return view;
+        }
+
+        if (view.labeled == null) {
+
+            view.labeled = new WekaDataset(getLabelledData());
+
+            // the slot of the hypothetical instance
+            view.labeled.add(getUnlabelledData().instance(0));
+        }
+
+        return view;
+    }
+
+    /**
+     * Return whether an update of the classifier with an instance is reverted
+     * by an update with the same instance with the opposite weight. Only the
+     * classes whose statistics are sums of weighted counts are accepted, and
+     * not their subclasses.
+     *
+     * @param classifier
+     *            The classifier.
+     * @return True if it is a NaiveBayesUpdateable or a
+     *         NaiveBayesMultinomialUpdateable.
+     */
+    protected static boolean isRevertible(Classifier classifier) {
+
+        return classifier != null && (classifier.getClass() == NaiveBayesUpdateable.class
+                || classifier.getClass() == NaiveBayesMultinomialUpdateable.class);
+    }
+
+    /**
+     * A copy of the labeled set with a slot for a hypothetical instance and a
+     * classifier to train with it.
+     */
+    private static class TrainingView {
+
+        private IDataset labeled;
+
+        private IClassifier classifier;
+
+        /**
+         * The classifier, if it is updated instead of rebuilt.
+         */
+        private UpdateableClassifier updateable;
+
+        /**
+         * The hypothetical instance added to the updateable classifier.
+         */
+        private Instance pending;
+
+        private boolean trained;
+    }
+}
@@ -15,12 +15,10 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.jclal.core.IClassifier;
 import net.sf.jclal.core.IDataset;
-import net.sf.jclal.dataset.WekaDataset;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Utils;
@@ -44,32 +42,18 @@ public class ExpectedCeroOneLossQueryStrategy extends ErrorReductionQueryStrateg
 	 */
 	@Override
 	public double utilityInstance(Instance instance) {
-		double result = 0;
 
-		try {
-
-			Instances unlabelled = getUnlabelledData().getDataset();
-
-			int k = unlabelled.indexOf(instance);
-
-			double[] probabilities = distributionForInstance(instance);
-
-			for (int i = 0; i < probabilities.length; i++) {
+		Instances unlabelled = getUnlabelledData().getDataset();
 
-				double currProb = probabilities[i];
-
-				double currLoss = expectedCeroOneLoss(k, i);
-
-				double currentResult = currProb * currLoss;
-
-				result += currentResult;
-			}
-
-		} catch (Exception ex) {
-			Logger.getLogger(ExpectedCeroOneLossQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
-		}
+		return utilityInstance(unlabelled.indexOf(instance));
+	}
 
-		return result;
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected double expectedLoss(int instanceToAdd, int classValue) {
+		return expectedCeroOneLoss(instanceToAdd, classValue);
 	}
 
 	/**
@@ -87,35 +71,32 @@ public class ExpectedCeroOneLossQueryStrategy extends ErrorReductionQueryStrateg
 		double sum = 0;
 
 		try {
-			// Make a copy of the labeled and unlabeled sets
-			IDataset labeledCopy = new WekaDataset(getLabelledData());
-
-			IDataset unlabeledCopy = new WekaDataset(getUnlabelledData());
+			// it trains the classifier with the labeled set plus the current
+			// instance, the class settles down according to the classifier
+			IClassifier clasificadorTemp = trainWithInstance(instanceToAdd, classValue);
 
-			// the class settles down according to the classifier
-			Instance copy = unlabeledCopy.instance(instanceToAdd);
+			IDataset unlabelled = getUnlabelledData();
 
-			// The current instance is removed from unlabeled set
-			unlabeledCopy.remove(instanceToAdd);
+			// the current instance is not part of the unlabeled set, the
+			// loss can be estimated on a sample
+			int[] sample = getLossPositions();
 
-			copy.setClassValue(classValue);
+			int size = sample == null ? unlabelled.getNumInstances() : sample.length;
 
-			// The current instance is added to labeled set
-			labeledCopy.add(copy);
+			int evaluated = 0;
 
-			// it trains the classifier with the new labeled set
-			IClassifier clasificadorTemp = getClassifier().makeCopy();
-			clasificadorTemp.buildClassifier(labeledCopy);
+			for (int s = 0; s < size; s++) {
 
-			Iterator<Instance> instanceIterator = unlabeledCopy.getDataset().iterator();
+				int j = sample == null ? s : sample[s];
 
-			Instance current;
-			while (instanceIterator.hasNext()) {
+				if (j == instanceToAdd) {
+					continue;
+				}
 
-				current = instanceIterator.next();
+				++evaluated;
 
 				double[] probabilities;
-				probabilities = clasificadorTemp.distributionForInstance(current);
+				probabilities = clasificadorTemp.distributionForInstance(unlabelled.instance(j));
 
 				double currConf = probabilities[Utils.maxIndex(probabilities)];
 
@@ -124,14 +105,7 @@ public class ExpectedCeroOneLossQueryStrategy extends ErrorReductionQueryStrateg
 				sum += currConf;
 			}
 
-			labeledCopy.getDataset().clear();
-			labeledCopy = null;
-			unlabeledCopy.getDataset().clear();
-			unlabeledCopy = null;
-			instanceIterator = null;
-			clasificadorTemp = null;
-			copy = null;
-			System.gc();
+			sum = scaleLoss(sum, evaluated);
 
 		} catch (Exception e) {
 			Logger.getLogger(ExpectedCeroOneLossQueryStrategy.class.getName()).log(Level.SEVERE, null, e);
@@ -15,12 +15,10 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.jclal.core.IClassifier;
 import net.sf.jclal.core.IDataset;
-import net.sf.jclal.dataset.WekaDataset;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -50,31 +48,18 @@ public class ExpectedLogLossQueryStrategy extends ErrorReductionQueryStrategy {
 	 */
 	@Override
 	public double utilityInstance(Instance instance) {
-		double result = 0;
 
-		try {
-			Instances unlabelled = getUnlabelledData().getDataset();
-
-			int k = unlabelled.indexOf(instance);
-
-			double[] probabilities = distributionForInstance(instance);
-
-			for (int i = 0; i < probabilities.length; i++) {
-
-				double currConf = probabilities[i];
+		Instances unlabelled = getUnlabelledData().getDataset();
 
-				double currLoss = expectedLogLoss(k, i);
-
-				double currentResult = currConf * currLoss;
-
-				result += currentResult;
-			}
-
-		} catch (Exception ex) {
-			Logger.getLogger(ExpectedLogLossQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
-		}
+		return utilityInstance(unlabelled.indexOf(instance));
+	}
 
-		return result;
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected double expectedLoss(int instanceToAdd, int classValue) {
+		return expectedLogLoss(instanceToAdd, classValue);
 	}
 
 	/**
@@ -92,32 +77,30 @@ public class ExpectedLogLossQueryStrategy extends ErrorReductionQueryStrategy {
 		double sum = 0;
 
 		try {
-			// Make a copy of the labeled and unlabeled sets
-			IDataset labeledCopy = new WekaDataset(getLabelledData());
-
-			IDataset unlabeledCopy = new WekaDataset(getUnlabelledData());
-
+			// To train the classifier with the labeled set plus the instance,
 			// the class settles down according to the classifier
-			Instance copy = unlabeledCopy.instance(instanceToAdd);
+			IClassifier clasificadorTemp = trainWithInstance(instanceToAdd, classValue);
 
-			unlabeledCopy.remove(instanceToAdd);
+			IDataset unlabelled = getUnlabelledData();
 
-			copy.setClassValue(classValue);
+			// the rest of the unlabeled set, or of the sample
+			int[] sample = getLossPositions();
 
-			labeledCopy.add(copy);
+			int size = sample == null ? unlabelled.getNumInstances() : sample.length;
 
-			// To train the classifier with the new labeled set
-			IClassifier clasificadorTemp = getClassifier().makeCopy();
-			clasificadorTemp.buildClassifier(labeledCopy);
+			int evaluated = 0;
 
-			Iterator<Instance> instanceIterator = unlabeledCopy.getDataset().iterator();
+			for (int s = 0; s < size; s++) {
 
-			Instance current;
-			while (instanceIterator.hasNext()) {
+				int j = sample == null ? s : sample[s];
+
+				if (j == instanceToAdd) {
+					continue;
+				}
 
-				current = instanceIterator.next();
+				++evaluated;
 
-				double[] probabilities = clasificadorTemp.distributionForInstance(current);
+				double[] probabilities = clasificadorTemp.distributionForInstance(unlabelled.instance(j));
 
 				for (int i = 0; i < probabilities.length; i++) {
 
@@ -130,14 +113,7 @@ public class ExpectedLogLossQueryStrategy extends ErrorReductionQueryStrategy {
 				}
 			}
 
-			labeledCopy.getDataset().clear();
-			labeledCopy = null;
-			unlabeledCopy.getDataset().clear();
-			unlabeledCopy = null;
-			instanceIterator = null;
-			clasificadorTemp = null;
-			copy = null;
-			System.gc();
+			sum = scaleLoss(sum, evaluated);
 
 		} catch (Exception e) {
 			Logger.getLogger(ExpectedLogLossQueryStrategy.class.getName()).log(Level.SEVERE, null, e);
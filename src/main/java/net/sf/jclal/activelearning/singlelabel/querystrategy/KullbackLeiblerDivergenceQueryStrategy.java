@@ -17,6 +17,7 @@ package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sf.jclal.activelearning.querystrategy.PredictionCache;
 import net.sf.jclal.classifier.AbstractClassifier;
 import net.sf.jclal.classifier.WekaComitteClassifier;
 import weka.core.Instance;
@@ -54,39 +55,111 @@ public class KullbackLeiblerDivergenceQueryStrategy extends QueryByCommittee {
 
 			int committeeSize = ((AbstractClassifier) getClassifier()).getNumberClassifiers();
 
-			double sumatoria = 0;
-
 			// consensus probabilities
 			double[] cprobs = getClassifier().distributionForInstance(instance);
 
+			double[][] probs = new double[committeeSize][];
+
 			for (int i = 0; i < committeeSize; i++) {
+				probs[i] = ((WekaComitteClassifier) getClassifier()).distributionForInstanceByMember(instance, i);
+			}
 
-				double sumInter = 0;
+			return divergence(cprobs, probs);
 
-				double[] probs = ((WekaComitteClassifier) getClassifier()).distributionForInstanceByMember(instance, i);
+		} catch (Exception e) {
 
-				int p = 0;
+			Logger.getLogger(KullbackLeiblerDivergenceQueryStrategy.class.getName()).log(Level.SEVERE, null, e);
+		}
+		return 0;
 
-				for (double prob : probs) {
+	}
 
-					if (prob != 0) {
-						sumInter += (prob * logbase2(prob / cprobs[p++]));
-					}
-				}
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The probabilities of each member are taken from the prediction cache, and
+	 * the consensus is computed from them instead of querying the committee
+	 * again.
+	 */
+	@Override
+	public double utilityInstance(int instanceIndex) {
+
+		try {
+
+			WekaComitteClassifier committee = (WekaComitteClassifier) getClassifier();
+
+			int committeeSize = committee.getNumberClassifiers();
+
+			Instance instance = getUnlabelledData().instance(instanceIndex);
+
+			PredictionCache cache = getPredictionCache();
+
+			long version = cache.getVersion();
+
+			double[][] probs = new double[committeeSize][];
+
+			for (int i = 0; i < committeeSize; i++) {
+
+				probs[i] = cache.get(i, instanceIndex);
 
-				sumatoria += sumInter;
+				if (probs[i] == null) {
+					probs[i] = committee.distributionForInstanceByMember(instance, i);
+					cache.put(version, i, instanceIndex, probs[i]);
+				}
 			}
 
-			sumatoria /= committeeSize;
+			// consensus probabilities
+			double[] cprobs = cache.get(PredictionCache.MODEL, instanceIndex);
+
+			if (cprobs == null) {
+				cprobs = committee.consensusDistribution(instance, probs);
+				cache.put(version, PredictionCache.MODEL, instanceIndex, cprobs);
+			}
 
-			return sumatoria;
+			return divergence(cprobs, probs);
 
 		} catch (Exception e) {
 
 			Logger.getLogger(KullbackLeiblerDivergenceQueryStrategy.class.getName()).log(Level.SEVERE, null, e);
 		}
 		return 0;
+	}
+
+	/**
+	 * Compute the mean Kullback-Leibler divergence of the members of the
+	 * committee to the consensus.
+	 *
+	 * @param cprobs
+	 *            The consensus probabilities.
+	 * @param probs
+	 *            The probabilities of each member.
+	 * @return The mean divergence.
+	 */
+	private double divergence(double[] cprobs, double[][] probs) {
+
+		int committeeSize = probs.length;
+
+		double sumatoria = 0;
+
+		for (int i = 0; i < committeeSize; i++) {
+
+			double sumInter = 0;
+
+			int p = 0;
+
+			for (double prob : probs[i]) {
+
+				if (prob != 0) {
+					sumInter += (prob * logbase2(prob / cprobs[p++]));
+				}
+			}
+
+			sumatoria += sumInter;
+		}
+
+		sumatoria /= committeeSize;
 
+		return sumatoria;
 	}
 
 	/**
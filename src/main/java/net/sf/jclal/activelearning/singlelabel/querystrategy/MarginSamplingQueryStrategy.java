@@ -15,7 +15,6 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
-import weka.core.Instance;
 import weka.core.Utils;
 
 /**
@@ -50,18 +49,21 @@ public class MarginSamplingQueryStrategy extends UncertaintySamplingQueryStrateg
 	 * {@inheritDoc}
 	 */
 	@Override
-	public double utilityInstance(Instance instance) {
-
-		double[] probs = distributionForInstance(instance);
+	protected double utilityDistribution(double[] probs) {
 
 		// determine the class with the highest probability
 		int ind1 = Utils.maxIndex(probs);
 		double max1 = probs[ind1];
-		probs[ind1] = 0;
 
-		// determine the second class with the highest probability
-		int ind2 = Utils.maxIndex(probs);
-		double max2 = probs[ind2];
+		// determine the second class with the highest probability, without
+		// modifying the distribution
+		double max2 = 0;
+
+		for (int i = 0; i < probs.length; i++) {
+			if (i != ind1 && probs[i] > max2) {
+				max2 = probs[i];
+			}
+		}
 
 		return max1 - max2;
 	}
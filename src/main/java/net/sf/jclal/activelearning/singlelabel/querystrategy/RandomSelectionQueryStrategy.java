@@ -52,13 +52,19 @@ public class RandomSelectionQueryStrategy extends AbstractSingleLabelQueryStrate
     }
 
     @Override
-    public double[] testUnlabeledData() {
+    public double[] testUnlabeledData(int[] positions) {
         randV = new double[getUnlabelledData().getNumInstances()];
-        for (int i = 0; i < randV.length; i++) {
-            randV[i] = random.raw();
+        if (positions == null) {
+            for (int i = 0; i < randV.length; i++) {
+                randV[i] = random.raw();
+            }
+        } else {
+            for (int position : positions) {
+                randV[position] = random.raw();
+            }
         }
 
-        return super.testUnlabeledData();
+        return super.testUnlabeledData(positions);
     }
 
     /**
@@ -70,7 +76,20 @@ public class RandomSelectionQueryStrategy extends AbstractSingleLabelQueryStrate
     @Override
     public double utilityInstance(Instance instance) {
 
-        return randV[getUnlabelledData().getDataset().indexOf(instance)];
+        return utilityInstance(getUnlabelledData().getDataset().indexOf(instance));
+
+    }
+
+    /**
+     * Returns the random value generated for the instance.
+     *
+     * @param instanceIndex The position of the instance in the unlabeled set.
+     * @return The utility of the instance.
+     */
+    @Override
+    public double utilityInstance(int instanceIndex) {
+
+        return randV[instanceIndex];
 
     }
 
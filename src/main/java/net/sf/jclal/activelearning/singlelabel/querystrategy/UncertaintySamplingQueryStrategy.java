@@ -15,6 +15,12 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
+import net.sf.jclal.activelearning.querystrategy.PredictionCache;
+import net.sf.jclal.core.IDataset;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
+import weka.core.Instance;
+
 /**
  * Abstract class for Uncertainty Sampling family of query strategies.
  *
@@ -32,4 +38,87 @@ package net.sf.jclal.activelearning.singlelabel.querystrategy;
 public abstract class UncertaintySamplingQueryStrategy extends AbstractSingleLabelQueryStrategy {
 
     private static final long serialVersionUID = -775271101825003928L;
-}
\ No newline at end of file
+
+    /**
+     * The distributions of the unlabeled instances, the matrix is reused
+     * between iterations.
+     */
+    private transient double[][] distributions;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double utilityInstance(Instance instance) {
+
+        return utilityDistribution(distributionForInstance(instance));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public double utilityInstance(int instanceIndex) {
+
+        return utilityDistribution(distributionForInstance(instanceIndex));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The distributions of the unlabeled instances are obtained by chunks with
+     * the batch prediction of the classifier, and the utilities are computed
+     * directly from them. The distributions are also stored in the prediction
+     * cache. When only some positions are tested, each instance is predicted
+     * through the cache.
+     */
+    @Override
+    public double[] testUnlabeledData(int[] positions) {
+
+        if (positions != null) {
+            return super.testUnlabeledData(positions);
+        }
+
+        final IDataset unlabeled = getUnlabelledData();
+
+        int size = unlabeled.getNumInstances();
+
+        if (distributions == null || distributions.length < size) {
+            distributions = new double[size][];
+        }
+
+        final double[][] matrix = distributions;
+
+        final double[] values = new double[size];
+
+        final PredictionCache cache = getPredictionCache();
+
+        final long version = cache.getVersion();
+
+        ParallelControl.forRange(0, size, isParallel(), new RangeTask() {
+
+            @Override
+            public void compute(int begin, int end) {
+
+                getClassifier().distributionForInstances(unlabeled, begin, end, matrix);
+
+                for (int i = begin; i < end; i++) {
+                    values[i] = utilityDistribution(matrix[i]);
+
+                    cache.put(version, PredictionCache.MODEL, i, matrix[i]);
+                }
+            }
+        });
+
+        return values;
+    }
+
+    /**
+     * Compute the utility of an instance from its probabilities of belonging
+     * to the classes. The array must not be modified.
+     *
+     * @param probabilities The distribution of the instance.
+     * @return The utility of the instance.
+     */
+    protected abstract double utilityDistribution(double[] probabilities);
+}
\ No newline at end of file
@@ -15,11 +15,18 @@
  */
 package net.sf.jclal.activelearning.singlelabel.querystrategy;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sf.jclal.core.IRandGen;
+import net.sf.jclal.core.ISystem;
+import net.sf.jclal.core.ITool;
 import net.sf.jclal.util.dataset.DatasetUtils;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Utils;
@@ -34,14 +41,37 @@ import weka.core.matrix.Matrix;
  * Burr Settles. Active Learning Literature Survey. Computer Sciences Technical
  * Report 1648, University of Wisconsin–Madison. 2009.
  *
+ * The Fisher matrix can be maintained between iterations (incremental-fisher):
+ * the outer products of the labeled instances are subtracted, the ones of the
+ * instances whose probability changed more than a tolerance are corrected, and
+ * the previous eigenvectors are refined with Jacobi rotations on the matrix
+ * projected on them (Rayleigh-Ritz). The Fisher matrix is computed again from
+ * scratch when the ignored changes exceed a fraction of its trace.
+ *
+ * The Fisher matrix is accumulated in parallel by blocks of rows, if the query
+ * strategy is parallel. Only the eigen-rank largest eigenpairs can be
+ * computed, by subspace iteration, instead of the whole decomposition. It is
+ * an approximation: every eigenpair contributes to q with a weight of the
+ * same order, so the selected instances can differ from the ones of the whole
+ * decomposition.
+ *
+ * When only some candidates of the unlabeled set are scored (e.g. the
+ * candidate-pool-size of the pool-based scenario), pi_sub_i, the Fisher matrix
+ * and q are computed over the candidates only, as an approximation of the
+ * ones of the whole unlabeled set, and the cost of an iteration depends on
+ * the number of candidates instead of the size of the unlabeled set.
  *
  * @author Oscar Gabriel Reyes Pupo
  * @author Maria del Carmen Rodriguez Hernandez
  * @author Eduardo Perez Perdomo
  */
-public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStrategy {
+public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStrategy implements ITool {
 
 	private static final long serialVersionUID = -8682210344709120584L;
+	/**
+	 * The number of rows of the Fisher matrix updated together.
+	 */
+	private static final int FISHER_BLOCK = 64;
 	/**
 	 * It adds to matrixFisher: (the matrix Identity for the regularization
 	 * factor) The regularization factor influences enormously the algorithm. A
@@ -77,6 +107,61 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
 	 * To control temporary values used for optimization.
 	 */
 	private int unlabelledSize = -1;
+	/**
+	 * Whether the Fisher matrix is maintained between iterations.
+	 */
+	private boolean incrementalFisher = false;
+	/**
+	 * The changes of pi_sub_i that are not corrected in the Fisher matrix.
+	 */
+	private double piTolerance = 0;
+	/**
+	 * The maximum sum of the ignored changes of the Fisher matrix, relative to
+	 * its trace, before computing it again.
+	 */
+	private double maxFisherDrift = 0.01;
+	/**
+	 * The state of the incremental Fisher matrix, the instances are the ones
+	 * of the unlabeled set in the same order.
+	 */
+	private transient Instance[] fisherInstances;
+	private transient double[][] fisherFeatures;
+	private transient double[] fisherPi;
+	private transient double[][] matrixFisher;
+	private transient double[][] fisherProjections;
+	/**
+	 * The eigenvectors, by columns, and the eigenvalues of the last
+	 * decomposition of the Fisher matrix.
+	 */
+	protected transient double[][] eigenvectors;
+	protected transient double[] eigenvalues;
+	/**
+	 * The rank-one changes of the Fisher matrix that are not yet in the
+	 * eigenvectors, as coefficients and projections on the eigenvectors.
+	 */
+	private transient ArrayList<Double> pendingCoefficients;
+	private transient ArrayList<double[]> pendingProjections;
+	/**
+	 * The number of largest eigenpairs that are computed, 0 means all of them.
+	 */
+	private int eigenRank = 0;
+	/**
+	 * The random numbers generator, used for the initial subspace.
+	 */
+	private IRandGen randgen;
+	/**
+	 * The maximum number of Jacobi sweeps of the refinement.
+	 */
+	private static final int MAX_SWEEPS = 20;
+	/**
+	 * The extra vectors of the subspace iteration, they speed up the
+	 * convergence of the last eigenpairs.
+	 */
+	private static final int OVERSAMPLING = 8;
+	/**
+	 * The maximum number of subspace iterations.
+	 */
+	private static final int MAX_SUBSPACE_ITERATIONS = 200;
 
 	/**
 	 *
@@ -89,192 +174,893 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
 	 * {@inheritDoc}
 	 */
 	@Override
-	public double[] testUnlabeledData() {
+	public double[] testUnlabeledData(int[] positions) {
 		Instances unlabeled = getUnlabelledData().getDataset();
 
+		if (positions != null && positions.length < unlabeled.numInstances()) {
+			return testCandidates(unlabeled, positions);
+		}
+
 		if (unlabelledSize != unlabeled.numInstances()) {
 			unlabelledSize = unlabeled.numInstances();
 
-			// it is initialized q_sub_i
-			int n = unlabeled.numInstances();
-			double[] q = new double[n];
-			// 1. q_sub_i = 1/n, i = 1, 2, ..., n
-			// Arrays.fill(q, 1.0 / n);
-			// further on it fills, to optimize
-
 			// it is initialized pi_sub_i
 			// 2. pi_sub_i
 			double[] piSubI = getPiSubI(unlabeled);
 
-			// to create the Fisher matrix
-			int dimensionMatrix = unlabeled.numAttributes() - 1;
-			int classIndex = unlabeled.classIndex();
+			if (!incrementalFisher || !isFisherValid(unlabeled) || !updateFisher(piSubI)) {
 
-			Matrix matrixFisher = null;
-			try {
-				matrixFisher = new Matrix(dimensionMatrix, dimensionMatrix);
-			} catch (Exception ex) {
-				Logger.getLogger(VarianceReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+				// the features of the instances, extracted once
+				double[][] features = getFeatures(unlabeled);
+
+				// to create the Fisher matrix
+				double[][] fisher = fisherMatrix(features, piSubI, unlabeled.numAttributes() - 1);
+
+				decompose(fisher);
+
+				// the products of each instance with the columns of V, they
+				// do not change in the iterations of q
+				fisherProjections = project(features, eigenvectors);
+
+				if (incrementalFisher) {
+					// eig does not modify the matrix
+					matrixFisher = fisher;
+					fisherFeatures = features;
+					fisherPi = piSubI.clone();
+					fisherInstances = new Instance[features.length];
+					for (int i = 0; i < fisherInstances.length; i++) {
+						fisherInstances[i] = unlabeled.instance(i);
+					}
+					pendingCoefficients = new ArrayList<Double>();
+					pendingProjections = new ArrayList<double[]>();
+				}
+			}
+
+			double[][] projections = fisherProjections;
+
+			double[] landa = eigenvalues;
+
+			if (!incrementalFisher) {
+				// the state is not kept
+				fisherProjections = null;
+				eigenvectors = null;
+				eigenvalues = null;
+			}
+
+			// the values are saved
+			tempValues = findQ(projections, landa, piSubI);
+		}
+
+		return super.testUnlabeledData(positions);
+	}
+
+	/**
+	 * Computes q only over the candidates: pi_sub_i, the Fisher matrix, its
+	 * decomposition and q are the ones of the candidates, so the cost does not
+	 * depend on the size of the unlabeled set. It is an approximation, the
+	 * Fisher matrix of the candidates stands for the one of the whole
+	 * unlabeled set and q is normalized among the candidates. The maintained
+	 * Fisher matrix belongs to the whole unlabeled set, so it is discarded.
+	 *
+	 * @param unlabeled
+	 *            The unlabeled set
+	 * @param positions
+	 *            The positions of the candidates in the unlabeled set.
+	 * @return The values of q of the candidates, in the order of the
+	 *         positions.
+	 */
+	private double[] testCandidates(Instances unlabeled, int[] positions) {
+
+		// the decomposition of the maintained Fisher matrix is replaced
+		fisherInstances = null;
+
+		Instances candidates = new Instances(unlabeled, positions.length);
+
+		for (int position : positions) {
+			candidates.add(unlabeled.instance(position));
+		}
+
+		double[] piSubI = getPiSubI(candidates);
+
+		double[][] features = getFeatures(candidates);
+
+		decompose(fisherMatrix(features, piSubI, unlabeled.numAttributes() - 1));
+
+		double[] q = findQ(project(features, eigenvectors), eigenvalues, piSubI);
+
+		fisherProjections = null;
+		eigenvectors = null;
+		eigenvalues = null;
+
+		return q;
+	}
+
+	/**
+	 * Decomposes the Fisher matrix, the whole decomposition or only the
+	 * eigen-rank largest eigenpairs. The results are stored in eigenvalues
+	 * and eigenvectors.
+	 *
+	 * @param fisher
+	 *            The Fisher matrix.
+	 */
+	private void decompose(double[][] fisher) {
+
+		if (isTruncated(fisher.length)) {
+
+			truncatedEigen(fisher, null);
+
+		} else {
+
+			// do eigen decomposition
+			EigenvalueDecomposition eigen = new Matrix(fisher).eig();
+
+			eigenvalues = eigen.getRealEigenvalues();
+
+			eigenvectors = eigen.getV().getArray();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The outer products of the selected instances are subtracted from the
+	 * Fisher matrix if it is maintained between iterations.
+	 */
+	@Override
+	public void updateLabeledData() {
+
+		if (fisherInstances != null) {
+			removeFromFisher(getSelectedInstances());
+		}
+
+		super.updateLabeledData();
+	}
+
+	/**
+	 * Checks whether the maintained Fisher matrix belongs to the current
+	 * unlabeled set, the instances could have been removed or added out of
+	 * the query strategy.
+	 *
+	 * @param unlabeled
+	 *            The unlabeled set
+	 * @return Whether the Fisher matrix can be updated.
+	 */
+	private boolean isFisherValid(Instances unlabeled) {
+
+		if (fisherInstances == null || fisherInstances.length != unlabeled.numInstances()) {
+			return false;
+		}
+
+		for (int i = 0; i < fisherInstances.length; i++) {
+			if (fisherInstances[i] != unlabeled.instance(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Subtracts the outer products of the instances that leave the unlabeled
+	 * set and removes them from the state, keeping the order of the others.
+	 *
+	 * @param positions
+	 *            The positions of the instances in the unlabeled set.
+	 */
+	private void removeFromFisher(ArrayList<Integer> positions) {
+
+		boolean[] removed = new boolean[fisherInstances.length];
+
+		for (Integer position : positions) {
+
+			if (position < 0 || position >= removed.length || removed[position]) {
+				// the state does not match the positions
+				fisherInstances = null;
+				return;
+			}
+
+			removed[position] = true;
+
+			double mult = fisherPi[position] * (1 - fisherPi[position]);
+
+			rankOneUpdate(fisherFeatures[position], -mult, fisherProjections[position]);
+		}
+
+		int kept = removed.length - positions.size();
+
+		Instance[] instances = new Instance[kept];
+		double[][] features = new double[kept][];
+		double[] pi = new double[kept];
+		double[][] projections = new double[kept][];
+
+		for (int i = 0, j = 0; i < removed.length; i++) {
+			if (!removed[i]) {
+				instances[j] = fisherInstances[i];
+				features[j] = fisherFeatures[i];
+				pi[j] = fisherPi[i];
+				projections[j] = fisherProjections[i];
+				j++;
 			}
+		}
 
-			for (int i = 0; i < piSubI.length; i++) {
-				double mult = piSubI[i] * (1 - piSubI[i]);
+		fisherInstances = instances;
+		fisherFeatures = features;
+		fisherPi = pi;
+		fisherProjections = projections;
+	}
 
-				// the values of the instance are had
-				double[] atributos = unlabeled.instance(i).toDoubleArray();
+	/**
+	 * Adds coefficient * x * x' to the Fisher matrix, and records the change
+	 * for the refinement of the eigenvectors.
+	 *
+	 * @param vectorX
+	 *            The features of the instance.
+	 * @param coefficient
+	 *            The coefficient.
+	 * @param projection
+	 *            The products of the instance with the eigenvectors.
+	 */
+	private void rankOneUpdate(double[] vectorX, double coefficient, double[] projection) {
+
+		for (int m = 0; m < vectorX.length; m++) {
 
-				// the attribute class is eliminated, only the features are left
-				double[] vectorX = DatasetUtils.copyFeatures(atributos, classIndex);
+			double[] row = matrixFisher[m];
+
+			double xm = vectorX[m] * coefficient;
+
+			for (int nn = 0; nn < vectorX.length; nn++) {
+				row[nn] += xm * vectorX[nn];
+			}
+		}
+
+		pendingCoefficients.add(coefficient);
+		pendingProjections.add(projection);
+	}
+
+	/**
+	 * Updates the maintained Fisher matrix with the new probabilities and
+	 * refines the eigenvectors.
+	 *
+	 * @param piSubI
+	 *            The current probability of the most probable class of each
+	 *            instance.
+	 * @return False if the Fisher matrix must be computed from scratch.
+	 */
+	private boolean updateFisher(double[] piSubI) {
+
+		double trace = 0;
+
+		for (int m = 0; m < matrixFisher.length; m++) {
+			trace += matrixFisher[m][m];
+		}
+
+		double drift = 0;
+
+		for (int i = 0; i < piSubI.length; i++) {
 
-				Matrix current = null;
-				try {
-					current = new Matrix(vectorX.length, vectorX.length);
-				} catch (Exception ex) {
-					Logger.getLogger(VarianceReductionQueryStrategy.class.getName()).log(Level.SEVERE, null, ex);
+			double delta = piSubI[i] * (1 - piSubI[i]) - fisherPi[i] * (1 - fisherPi[i]);
+
+			if (Math.abs(piSubI[i] - fisherPi[i]) > piTolerance) {
+
+				rankOneUpdate(fisherFeatures[i], delta, fisherProjections[i]);
+
+				fisherPi[i] = piSubI[i];
+
+			} else {
+
+				// the change of the trace that is ignored
+				double norm = 0;
+				for (double x : fisherFeatures[i]) {
+					norm += x * x;
 				}
 
-				productVector(current, vectorX);
+				drift += Math.abs(delta) * norm;
+			}
+		}
+
+		if (drift > maxFisherDrift * Math.abs(trace)) {
+			return false;
+		}
+
+		if (isTruncated(matrixFisher.length)) {
+
+			pendingCoefficients.clear();
+			pendingProjections.clear();
+
+			// the previous eigenvectors are the initial subspace
+			truncatedEigen(matrixFisher, eigenvectors);
+
+			fisherProjections = project(fisherFeatures, eigenvectors);
+
+			return true;
+		}
+
+		return refineEigenvectors();
+	}
+
+	/**
+	 * Rayleigh-Ritz refinement of the eigenvectors: the Fisher matrix projected
+	 * on the previous eigenvectors is the diagonal of the eigenvalues plus the
+	 * pending rank-one changes, and it is diagonalized with Jacobi rotations,
+	 * which are also applied to the eigenvectors and to the projections of the
+	 * instances.
+	 *
+	 * @return False if the rotations did not converge.
+	 */
+	private boolean refineEigenvectors() {
+
+		int d = eigenvalues.length;
+
+		double[][] b = new double[d][d];
+
+		for (int j = 0; j < d; j++) {
+			b[j][j] = eigenvalues[j];
+		}
+
+		for (int k = 0; k < pendingCoefficients.size(); k++) {
+
+			double coefficient = pendingCoefficients.get(k);
 
-				// it multiplies current * multi
-				current.timesEquals(mult);
+			double[] p = pendingProjections.get(k);
 
-				// it adds current to matrixFisher
-				// plusEquals saves the result in matrixFisher
-				matrixFisher.plusEquals(current);
+			for (int m = 0; m < d; m++) {
 
+				double pm = p[m] * coefficient;
+
+				for (int nn = 0; nn < d; nn++) {
+					b[m][nn] += pm * p[nn];
+				}
 			}
+		}
 
-			double factorRegularizationValue = getFactorRegularization();
+		pendingCoefficients.clear();
+		pendingProjections.clear();
 
-			Matrix identity = Matrix.identity(dimensionMatrix, dimensionMatrix);
+		boolean converged = false;
 
-			identity.timesEquals(factorRegularizationValue);
+		for (int sweep = 0; sweep < MAX_SWEEPS && !converged; sweep++) {
 
-			// the result joins to matrixFisher
-			matrixFisher.plusEquals(identity);
+			converged = true;
 
-			// do eigen decomposition
-			EigenvalueDecomposition eigen = matrixFisher.eig();
+			for (int p = 0; p < d - 1; p++) {
+				for (int q = p + 1; q < d; q++) {
 
-			// in case of file, the matrix v takes the matrix file from eigen
-			// in this case eigen cant not be destroy for the moment
-			Matrix v = eigen.getV();
+					double bpq = b[p][q];
 
-			double[] landa = eigen.getRealEigenvalues();
+					if (Math.abs(bpq) <= 1e-12 * Math.sqrt(Math.abs(b[p][p] * b[q][q]))) {
+						continue;
+					}
 
-			double epsilonValue = getEpsilon();
+					converged = false;
 
-			// variable copies of q to know if there has been some change
-			double[] copiaQ = new double[q.length];
-			Arrays.fill(copiaQ, 1.0 / n);
+					double theta = (b[q][q] - b[p][p]) / (2 * bpq);
 
-			// while it finds change in q, it keeps on iterating
-			currentEpsilonIteration = 0;
-			do {
-				++currentEpsilonIteration;
-				// the value of q is updated
-				// in the first iteration it fills with 1.0/n
-				System.arraycopy(copiaQ, 0, q, 0, q.length);
+					double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
 
-				// process of finding f_sub_i
-				double[] f = new double[landa.length];
-				for (int j = 0; j < f.length; j++) {
-					f[j] = 0;
+					if (theta == 0) {
+						t = 1;
+					}
 
-					for (int i = 0; i < n; i++) {
-						double mult = q[i] * piSubI[i] * (1 - piSubI[i]);
+					double c = 1 / Math.sqrt(t * t + 1);
 
-						// the values of the instance are had
-						double[] atributos = unlabeled.instance(i).toDoubleArray();
+					double sn = t * c;
 
-						// the attribute class is eliminated, only the features
-						// are left
-						double[] vectorX = DatasetUtils.copyFeatures(atributos, classIndex);
+					rotateColumns(b, p, q, c, sn);
 
-						// it multiplies vector_x with vector_columna of V
-						// vector_x it is: 1 X n
-						// vector_de_V it is: n X 1
-						// result: a number
-						double multVectores = 0;
-						for (int k = 0; k < vectorX.length; k++) {
-							multVectores += vectorX[k] * v.get(k, j);
-						}
+					// the rows
+					for (int k = 0; k < d; k++) {
+						double bp = b[p][k];
+						double bq = b[q][k];
+
+						b[p][k] = c * bp - sn * bq;
+						b[q][k] = sn * bp + c * bq;
+					}
+
+					b[p][q] = 0;
+					b[q][p] = 0;
+
+					rotateColumns(eigenvectors, p, q, c, sn);
+
+					rotateColumns(fisherProjections, p, q, c, sn);
+				}
+			}
+		}
+
+		if (!converged) {
+			return false;
+		}
+
+		for (int j = 0; j < d; j++) {
+			eigenvalues[j] = b[j][j];
+		}
+
+		return true;
+	}
+
+	/**
+	 * Applies a Jacobi rotation to two columns of a matrix.
+	 *
+	 * @param a
+	 *            The matrix, by rows.
+	 * @param p
+	 *            The first column.
+	 * @param q
+	 *            The second column.
+	 * @param c
+	 *            The cosine of the rotation.
+	 * @param sn
+	 *            The sine of the rotation.
+	 */
+	private static void rotateColumns(double[][] a, int p, int q, double c, double sn) {
+
+		for (double[] row : a) {
+
+			double ap = row[p];
+			double aq = row[q];
+
+			row[p] = c * ap - sn * aq;
+			row[q] = sn * ap + c * aq;
+		}
+	}
+
+	/**
+	 * Extracts the features of the instances, without the class attribute.
+	 *
+	 * @param unlabeled
+	 *            The unlabeled set
+	 * @return A row with the features of each instance.
+	 */
+	private double[][] getFeatures(Instances unlabeled) {
+
+		double[][] features = new double[unlabeled.numInstances()][];
+
+		int classIndex = unlabeled.classIndex();
+
+		for (int i = 0; i < features.length; i++) {
+			features[i] = DatasetUtils.copyFeatures(unlabeled.instance(i).toDoubleArray(), classIndex);
+		}
+
+		return features;
+	}
+
+	/**
+	 * Computes the Fisher matrix, the sum of x * x' * pi_sub_i * (1 -
+	 * pi_sub_i) over the instances plus the regularization factor in the
+	 * diagonal. The outer products are added directly to the matrix, by blocks
+	 * of rows, and only the upper triangle is computed since the matrix is
+	 * symmetric.
+	 *
+	 * @param features
+	 *            The features of the instances.
+	 * @param piSubI
+	 *            The probability of the most probable class of each instance.
+	 * @param dimension
+	 *            The number of features.
+	 * @return The Fisher matrix.
+	 */
+	private double[][] fisherMatrix(final double[][] features, final double[] piSubI, final int dimension) {
+
+		final double[][] matrixFisher = new double[dimension][dimension];
+
+		int blocks = (dimension + FISHER_BLOCK - 1) / FISHER_BLOCK;
+
+		// each block of rows is accumulated by a single thread, in the order
+		// of the instances
+		ParallelControl.forRange(0, blocks, 1, isParallel(), new RangeTask() {
+
+			@Override
+			public void compute(int beginBlock, int endBlock) {
+
+				for (int block = beginBlock; block < endBlock; block++) {
+
+					int begin = block * FISHER_BLOCK;
 
-						// the result rises up to the square
-						multVectores *= multVectores;
+					int end = Math.min(begin + FISHER_BLOCK, dimension);
 
-						// it joins to f[j]
-						f[j] += mult * multVectores;
+					for (int i = 0; i < features.length; i++) {
+
+						double mult = piSubI[i] * (1 - piSubI[i]);
+
+						double[] vectorX = features[i];
+
+						for (int m = begin; m < end; m++) {
+
+							double[] row = matrixFisher[m];
+
+							double xm = vectorX[m];
+
+							for (int nn = m; nn < dimension; nn++) {
+								row[nn] += xm * vectorX[nn] * mult;
+							}
+						}
 					}
 				}
+			}
+		});
 
-				// the first process of finding q of the current iteration
-				for (int i = 0; i < n; i++) {
-					double mult = copiaQ[i] * copiaQ[i] * piSubI[i] * (1 - piSubI[i]);
+		double factorRegularizationValue = getFactorRegularization();
 
-					// the values of the instance are had
-					double[] atributos = unlabeled.instance(i).toDoubleArray();
+		for (int m = 0; m < dimension; m++) {
 
-					// the attribute class is eliminated, only the features are
-					// left
-					double[] vectorX = DatasetUtils.copyFeatures(atributos, classIndex);
+			// the lower triangle
+			for (int nn = 0; nn < m; nn++) {
+				matrixFisher[m][nn] = matrixFisher[nn][m];
+			}
+
+			// the identity for the regularization factor
+			matrixFisher[m][m] += factorRegularizationValue;
+		}
 
-					// the following ∑ is realized
-					double sumatoria = 0;
-					for (int j = 0; j < landa.length; j++) {
+		return matrixFisher;
+	}
 
-						// it multiplies vector_x with vector_columna of V
-						// vector_x is: 1 X n
-						// vector_de_V is: n X 1
-						// result: a number
-						double multVectores = 0;
-						for (int k = 0; k < vectorX.length; k++) {
-							multVectores += vectorX[k] * v.get(k, j);
+	/**
+	 * Multiplies each instance with the columns of V.
+	 *
+	 * @param features
+	 *            The features of the instances.
+	 * @param v
+	 *            The matrix of eigenvectors.
+	 * @return The row of products of each instance.
+	 */
+	private double[][] project(final double[][] features, final double[][] v) {
+
+		final int columns = v.length == 0 ? 0 : v[0].length;
+
+		final double[][] projections = new double[features.length][columns];
+
+		ParallelControl.forRange(0, features.length, isParallel(), new RangeTask() {
+
+			@Override
+			public void compute(int begin, int end) {
+
+				for (int i = begin; i < end; i++) {
+
+					double[] vectorX = features[i];
+
+					double[] row = projections[i];
+
+					for (int k = 0; k < vectorX.length; k++) {
+
+						double xk = vectorX[k];
+
+						double[] vk = v[k];
+
+						for (int j = 0; j < columns; j++) {
+							row[j] += xk * vk[j];
 						}
+					}
+				}
+			}
+		});
+
+		return projections;
+	}
+
+	/**
+	 * Whether only the largest eigenpairs are computed.
+	 *
+	 * @param dimension
+	 *            The dimension of the Fisher matrix.
+	 * @return Whether the decomposition is truncated.
+	 */
+	private boolean isTruncated(int dimension) {
+		return eigenRank > 0 && eigenRank < dimension;
+	}
+
+	/**
+	 * Computes the eigenRank largest eigenpairs of the Fisher matrix by
+	 * subspace iteration with Rayleigh-Ritz projections. The iteration is done
+	 * with the Fisher matrix minus the regularization factor, which has the
+	 * same eigenvectors and converges faster. The results are stored in
+	 * eigenvalues and eigenvectors.
+	 *
+	 * @param fisher
+	 *            The Fisher matrix.
+	 * @param start
+	 *            The initial eigenvectors, by rows, or null to start with a
+	 *            random subspace.
+	 */
+	protected void truncatedEigen(double[][] fisher, double[][] start) {
+
+		int d = fisher.length;
+
+		int k = Math.min(d, eigenRank + OVERSAMPLING);
+
+		// the vectors of the subspace, by columns
+		double[][] basis = new double[k][d];
+
+		for (int c = 0; c < k; c++) {
+			for (int m = 0; m < d; m++) {
+				if (start != null && c < start[m].length) {
+					basis[c][m] = start[m][c];
+				} else {
+					basis[c][m] = randgen.raw() - 0.5;
+				}
+			}
+		}
+
+		double shift = getFactorRegularization();
+
+		orthonormalize(basis);
+
+		double[][] image = multiply(fisher, basis, shift);
+
+		double[] ritzValues = null;
+
+		for (int iteration = 0; iteration < MAX_SUBSPACE_ITERATIONS; iteration++) {
+
+			// Rayleigh-Ritz, T = Q' * (F - shift) * Q
+			double[][] t = new double[k][k];
+
+			for (int a = 0; a < k; a++) {
+				for (int b = a; b < k; b++) {
+					t[a][b] = dot(basis[a], image[b]);
+					t[b][a] = t[a][b];
+				}
+			}
+
+			EigenvalueDecomposition eigen = new Matrix(t).eig();
 
-						// the result multiplies with landa[j]
-						multVectores *= landa[j];
+			ritzValues = eigen.getRealEigenvalues();
 
-						// it rises up to the square
-						multVectores *= multVectores;
+			double[][] w = eigen.getV().getArray();
 
-						// it splits between the square of f [j]
-						multVectores /= f[j] * f[j];
+			basis = combine(basis, w);
 
-						// the sumatoria is added
-						sumatoria += multVectores;
+			image = combine(image, w);
+
+			// the eigenvalues are in ascending order, the largest are the
+			// last ones
+			boolean converged = true;
+
+			for (int c = k - eigenRank; c < k && converged; c++) {
+
+				double residual = 0;
+
+				for (int m = 0; m < d; m++) {
+					double r = image[c][m] - ritzValues[c] * basis[c][m];
+					residual += r * r;
+				}
+
+				converged = Math.sqrt(residual) <= 1e-10 * (Math.abs(ritzValues[c]) + shift);
+			}
+
+			if (converged) {
+				break;
+			}
+
+			basis = image;
+
+			orthonormalize(basis);
+
+			image = multiply(fisher, basis, shift);
+		}
+
+		eigenvalues = new double[eigenRank];
+
+		eigenvectors = new double[d][eigenRank];
+
+		for (int j = 0; j < eigenRank; j++) {
+
+			int c = k - eigenRank + j;
+
+			eigenvalues[j] = ritzValues[c] + shift;
+
+			for (int m = 0; m < d; m++) {
+				eigenvectors[m][j] = basis[c][m];
+			}
+		}
+	}
+
+	/**
+	 * Multiplies the matrix minus shift * I by each vector, in parallel by
+	 * rows of the matrix.
+	 */
+	private double[][] multiply(final double[][] a, final double[][] vectors, final double shift) {
+
+		final double[][] result = new double[vectors.length][a.length];
+
+		ParallelControl.forRange(0, a.length, isParallel(), new RangeTask() {
+
+			@Override
+			public void compute(int begin, int end) {
+				for (int m = begin; m < end; m++) {
+					for (int c = 0; c < vectors.length; c++) {
+						result[c][m] = dot(a[m], vectors[c]) - shift * vectors[c][m];
 					}
+				}
+			}
+		});
+
+		return result;
+	}
+
+	/**
+	 * Linear combinations of the vectors, result[j] = sum of vectors[c] *
+	 * w[c][j].
+	 */
+	private static double[][] combine(double[][] vectors, double[][] w) {
 
-					// the value of copia_q [i] is: mult * sumatoria
-					copiaQ[i] = mult * sumatoria;
+		double[][] result = new double[vectors.length][vectors[0].length];
+
+		for (int j = 0; j < result.length; j++) {
+			for (int c = 0; c < vectors.length; c++) {
+
+				double wcj = w[c][j];
+
+				double[] vector = vectors[c];
+
+				for (int m = 0; m < vector.length; m++) {
+					result[j][m] += wcj * vector[m];
 				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Modified Gram-Schmidt orthonormalization of the vectors. A vector that
+	 * is dependent of the previous ones is replaced by a canonical one.
+	 */
+	private static void orthonormalize(double[][] vectors) {
+
+		for (int c = 0; c < vectors.length; c++) {
+
+			double[] vector = vectors[c];
+
+			for (int attempt = 0; attempt <= vector.length; attempt++) {
 
-				// the second step to find q in the iteration
+				for (int p = 0; p < c; p++) {
 
-				/*
-				 * the sum must be out, if it was inside and with copia_q then
-				 * one would give priority to the last instance and the last one
-				 * would be always chosen
-				 */
-				double suma = 0;
-				for (int j = 0; j < n; j++) {
-					suma += copiaQ[j];
+					double projection = dot(vectors[p], vector);
+
+					for (int m = 0; m < vector.length; m++) {
+						vector[m] -= projection * vectors[p][m];
+					}
 				}
 
-				for (int i = 0; i < n; i++) {
-					copiaQ[i] = copiaQ[i] / suma;
+				double norm = Math.sqrt(dot(vector, vector));
+
+				if (norm > 1e-12) {
+					for (int m = 0; m < vector.length; m++) {
+						vector[m] /= norm;
+					}
+					break;
 				}
 
-			} while (change(q, copiaQ, epsilonValue));
+				Arrays.fill(vector, 0);
+				vector[(c + attempt) % vector.length] = 1;
+			}
+		}
+	}
 
-			// the values are saved
-			tempValues = new double[copiaQ.length];
+	/**
+	 * The dot product of two vectors.
+	 */
+	private static double dot(double[] a, double[] b) {
 
-			System.arraycopy(copiaQ, 0, tempValues, 0, copiaQ.length);
+		double sum = 0;
 
+		for (int m = 0; m < a.length; m++) {
+			sum += a[m] * b[m];
 		}
 
-		return super.testUnlabeledData();
+		return sum;
+	}
+
+	/**
+	 * Iterates the values of q until there is not a change greater than
+	 * epsilon.
+	 *
+	 * @param projections
+	 *            The products of each instance with the columns of V.
+	 * @param landa
+	 *            The eigenvalues.
+	 * @param piSubI
+	 *            The probability of the most probable class of each instance.
+	 * @return The values of q.
+	 */
+	private double[] findQ(final double[][] projections, final double[] landa, final double[] piSubI) {
+
+		final int n = projections.length;
+
+		// it is initialized q_sub_i
+		final double[] q = new double[n];
+
+		double epsilonValue = getEpsilon();
+
+		// variable copies of q to know if there has been some change
+		// 1. q_sub_i = 1/n, i = 1, 2, ..., n
+		final double[] copiaQ = new double[n];
+		Arrays.fill(copiaQ, 1.0 / n);
+
+		final double[] f = new double[landa.length];
+
+		// while it finds change in q, it keeps on iterating
+		currentEpsilonIteration = 0;
+		do {
+			++currentEpsilonIteration;
+			// the value of q is updated
+			// in the first iteration it fills with 1.0/n
+			System.arraycopy(copiaQ, 0, q, 0, q.length);
+
+			// process of finding f_sub_i, by columns
+			ParallelControl.forRange(0, f.length, isParallel(), new RangeTask() {
+
+				@Override
+				public void compute(int begin, int end) {
+
+					Arrays.fill(f, begin, end, 0);
+
+					for (int i = 0; i < n; i++) {
+						double mult = q[i] * piSubI[i] * (1 - piSubI[i]);
+
+						double[] row = projections[i];
+
+						for (int j = begin; j < end; j++) {
+							// the product of x and the column j of V rises up
+							// to the square
+							f[j] += mult * (row[j] * row[j]);
+						}
+					}
+				}
+			});
+
+			// the first process of finding q of the current iteration
+			ParallelControl.forRange(0, n, isParallel(), new RangeTask() {
+
+				@Override
+				public void compute(int begin, int end) {
+
+					for (int i = begin; i < end; i++) {
+						double mult = copiaQ[i] * copiaQ[i] * piSubI[i] * (1 - piSubI[i]);
+
+						double[] row = projections[i];
+
+						// the following sum is realized
+						double sumatoria = 0;
+						for (int j = 0; j < landa.length; j++) {
+
+							// the product multiplies with landa[j]
+							double multVectores = row[j] * landa[j];
+
+							// it rises up to the square
+							multVectores *= multVectores;
+
+							// it splits between the square of f [j]
+							multVectores /= f[j] * f[j];
+
+							// the sumatoria is added
+							sumatoria += multVectores;
+						}
+
+						// the value of copia_q [i] is: mult * sumatoria
+						copiaQ[i] = mult * sumatoria;
+					}
+				}
+			});
+
+			// the second step to find q in the iteration
+
+			/*
+			 * the sum must be out, if it was inside and with copia_q then one
+			 * would give priority to the last instance and the last one would
+			 * be always chosen
+			 */
+			double suma = 0;
+			for (int j = 0; j < n; j++) {
+				suma += copiaQ[j];
+			}
+
+			for (int i = 0; i < n; i++) {
+				copiaQ[i] = copiaQ[i] / suma;
+			}
+
+		} while (change(q, copiaQ, epsilonValue));
+
+		return copiaQ;
 	}
 
 	/**
@@ -287,7 +1073,16 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
 
 		int indice = unlabeled.indexOf(instance);
 
-		return tempValues[indice];
+		return utilityInstance(indice);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double utilityInstance(int instanceIndex) {
+
+		return tempValues[instanceIndex];
 	}
 
 	/**
@@ -356,6 +1151,101 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
 		}
 	}
 
+	/**
+	 * Get whether the Fisher matrix is maintained between iterations
+	 *
+	 * @return The flag.
+	 */
+	public boolean isIncrementalFisher() {
+		return incrementalFisher;
+	}
+
+	/**
+	 * Set whether the Fisher matrix is maintained between iterations
+	 *
+	 * @param incrementalFisher
+	 *            The flag.
+	 */
+	public void setIncrementalFisher(boolean incrementalFisher) {
+		this.incrementalFisher = incrementalFisher;
+	}
+
+	/**
+	 * Get the changes of pi_sub_i that are not corrected in the Fisher matrix
+	 *
+	 * @return The tolerance.
+	 */
+	public double getPiTolerance() {
+		return piTolerance;
+	}
+
+	/**
+	 * Set the changes of pi_sub_i that are not corrected in the Fisher matrix
+	 *
+	 * @param piTolerance
+	 *            The tolerance.
+	 */
+	public void setPiTolerance(double piTolerance) {
+		this.piTolerance = piTolerance;
+	}
+
+	/**
+	 * Get the maximum ignored change of the Fisher matrix, relative to its
+	 * trace
+	 *
+	 * @return The maximum drift.
+	 */
+	public double getMaxFisherDrift() {
+		return maxFisherDrift;
+	}
+
+	/**
+	 * Set the maximum ignored change of the Fisher matrix, relative to its
+	 * trace, before it is computed from scratch
+	 *
+	 * @param maxFisherDrift
+	 *            The maximum drift.
+	 */
+	public void setMaxFisherDrift(double maxFisherDrift) {
+		this.maxFisherDrift = maxFisherDrift;
+	}
+
+	/**
+	 * Get the number of largest eigenpairs that are computed
+	 *
+	 * @return The number of eigenpairs, 0 means all of them.
+	 */
+	public int getEigenRank() {
+		return eigenRank;
+	}
+
+	/**
+	 * Set the number of largest eigenpairs that are computed. The utilities
+	 * are an approximation of the ones of the whole decomposition.
+	 *
+	 * @param eigenRank
+	 *            The number of eigenpairs, 0 means all of them.
+	 */
+	public void setEigenRank(int eigenRank) {
+		this.eigenRank = eigenRank;
+	}
+
+	/**
+	 * Contextualize the random generator.
+	 *
+	 * @param context
+	 *            The context to use.
+	 */
+	@Override
+	public void contextualize(ISystem context) {
+
+		// the generator is only created if it is used, so the other random
+		// sequences of the experiment do not change
+		if (eigenRank > 0) {
+			randgen = context.createRandGen();
+		}
+	}
+
 	/**
 	 * Set the regularization factor
 	 *
@@ -433,6 +1323,11 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
 	 *            <li>epsilon= double</li>
 	 *            <li>epsilon-iteration= int</li>
 	 *            <li>factor-regularization= double</li>
+	 *            <li>incremental-fisher= boolean, false by default</li>
+	 *            <li>pi-tolerance= double, 0 by default</li>
+	 *            <li>max-fisher-drift= double, 0.01 by default</li>
+	 *            <li>eigen-rank= int, 0 (all the eigenpairs) by default, a
+	 *            lower rank approximates the utilities</li>
 	 *            </ul>
 	 */
 	@Override
@@ -451,5 +1346,32 @@ public class VarianceReductionQueryStrategy extends AbstractSingleLabelQueryStra
 		double currentFactorRegularization = configuration.getDouble("factor-regularization", factorRegularization);
 		setFactorRegularization(currentFactorRegularization);
 
+		// Set the incremental Fisher matrix
+		setIncrementalFisher(configuration.getBoolean("incremental-fisher", incrementalFisher));
+
+		double currentPiTolerance = configuration.getDouble("pi-tolerance", piTolerance);
+
+		if (currentPiTolerance < 0) {
+			throw new ConfigurationRuntimeException("\nThe pi-tolerance must not be negative");
+		}
+
+		setPiTolerance(currentPiTolerance);
+
+		double currentMaxFisherDrift = configuration.getDouble("max-fisher-drift", maxFisherDrift);
+
+		if (currentMaxFisherDrift < 0) {
+			throw new ConfigurationRuntimeException("\nThe max-fisher-drift must not be negative");
+		}
+
+		setMaxFisherDrift(currentMaxFisherDrift);
+
+		int currentEigenRank = configuration.getInt("eigen-rank", eigenRank);
+
+		if (currentEigenRank < 0) {
+			throw new ConfigurationRuntimeException("\nThe eigen-rank must not be negative");
+		}
+
+		setEigenRank(currentEigenRank);
+
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
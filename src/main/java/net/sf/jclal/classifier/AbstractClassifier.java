@@ -21,6 +21,11 @@ import org.apache.commons.configuration.Configuration;
 
 import net.sf.jclal.core.IClassifier;
 import net.sf.jclal.core.IConfigure;
+import net.sf.jclal.core.IDataset;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
+import weka.core.Instance;
+import weka.core.Instances;
 import weka.core.SerializedObject;
 
 /**
@@ -92,6 +97,65 @@ public abstract class AbstractClassifier implements IClassifier, Serializable, I
 		return (IClassifier) new SerializedObject(this).getObject();
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double[][] distributionForInstances(IDataset instances) {
+
+		double[][] distributions = new double[instances.getNumInstances()][];
+
+		distributionForInstances(instances, 0, distributions.length, distributions);
+
+		return distributions;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * By default the range is split in chunks that are processed in parallel
+	 * (if the classifier is parallelized) with
+	 * {@link #distributionForInstance(Instance)}.
+	 */
+	@Override
+	public void distributionForInstances(IDataset instances, int begin, int end, final double[][] distributions) {
+
+		final Instances data = instances.getDataset();
+
+		ParallelControl.forRange(begin, end, isParallel(), new RangeTask() {
+
+			@Override
+			public void compute(int begin, int end) {
+				for (int i = begin; i < end; i++) {
+					storeDistribution(distributions, i, distributionForInstance(data.instance(i)));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Store a distribution in a row of a matrix of distributions. If the row
+	 * has the same length than the distribution, the values are copied in the
+	 * row.
+	 *
+	 * @param distributions
+	 *            The matrix of distributions.
+	 * @param index
+	 *            The row.
+	 * @param distribution
+	 *            The distribution to store.
+	 */
+	protected static void storeDistribution(double[][] distributions, int index, double[] distribution) {
+
+		double[] row = distributions[index];
+
+		if (row != null && distribution != null && row.length == distribution.length) {
+			System.arraycopy(distribution, 0, row, 0, row.length);
+		} else {
+			distributions[index] = distribution;
+		}
+	}
+
 	@Override
 	public void configure(Configuration settings) {
 		boolean parallel = settings.getBoolean("parallel", isParallel());
@@ -150,6 +150,8 @@ public class MOAClassifier extends AbstractClassifier {
 	@Override
 	public void configure(Configuration configuration) {
 
+		super.configure(configuration);
+
 		String classifierError = "classifier type= ";
 		try {
 			
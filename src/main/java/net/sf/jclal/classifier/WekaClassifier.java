@@ -21,12 +21,13 @@ import net.sf.jclal.core.IConfigure;
 import net.sf.jclal.core.IDataset;
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
 import net.sf.jclal.evaluation.measure.SingleLabelEvaluation;
-import net.sf.jclal.util.thread.ThreadControl;
+import net.sf.jclal.util.thread.ParallelControl;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
+import weka.core.BatchPredictor;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -83,37 +84,47 @@ public class WekaClassifier extends AbstractClassifier {
 
 	/**
 	 * {@inheritDoc}
+	 *
+	 * If the Weka classifier is a batch predictor, the whole range is
+	 * predicted in a single call.
 	 */
 	@Override
-	public AbstractEvaluation testModel(IDataset instances) {
+	public void distributionForInstances(IDataset instances, int begin, int end, double[][] distributions) {
 
-		try {
+		if (classifier instanceof BatchPredictor && begin < end) {
 
-			// test phase with the actual model
-			Evaluation evaluator = new Evaluation(new Instances(instances.getDataset(), 0));
+			try {
+				double[][] batch = ((BatchPredictor) classifier)
+						.distributionsForInstances(new Instances(instances.getDataset(), begin, end - begin));
 
-			final Instances testData = instances.getDataset();
+				for (int i = 0; i < batch.length; i++) {
+					storeDistribution(distributions, begin + i, batch[i]);
+				}
 
-			final double[][] evaluations = new double[testData.numInstances()][];
+				return;
 
-			ThreadControl thread = ThreadControl.defaultThreadControl(isParallel());
+			} catch (Exception e) {
+				Logger.getLogger(WekaClassifier.class.getName()).log(Level.SEVERE, null, e);
+			}
+		}
 
-			for (int i = 0; i < evaluations.length; i++) {
+		super.distributionForInstances(instances, begin, end, distributions);
+	}
 
-				final int j = i;
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public AbstractEvaluation testModel(IDataset instances) {
 
-				thread.execute(new Runnable() {
+		try {
 
-					@Override
-					public void run() {
-						evaluations[j] = distributionForInstance(testData.instance(j));
-					}
-				});
+			// test phase with the actual model
+			Evaluation evaluator = new Evaluation(new Instances(instances.getDataset(), 0));
 
-			}
+			Instances testData = instances.getDataset();
 
-			thread.end();
-			thread = null;
+			double[][] evaluations = distributionForInstances(instances);
 
 			for (int i = 0; i < evaluations.length; i++) {
 				evaluator.evaluationForSingleInstance(evaluations[i], testData.instance(i), true);
@@ -135,8 +146,7 @@ public class WekaClassifier extends AbstractClassifier {
 	@Override
 	public String toString() {
         StringBuilder extra = new StringBuilder();
-        ThreadControl c = ThreadControl.defaultThreadControl(isParallel());
-        extra.append("-").append(c.getDefaultCores()).append("cores");
+        extra.append("-").append(ParallelControl.getCores(isParallel())).append("cores");
 
         return classifier.getClass().getSimpleName().concat(extra.toString());
     }
@@ -15,13 +15,15 @@
  */
 package net.sf.jclal.classifier;
 
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import net.sf.jclal.core.IConfigure;
 import net.sf.jclal.core.IDataset;
 import net.sf.jclal.evaluation.measure.AbstractEvaluation;
 import net.sf.jclal.evaluation.measure.SingleLabelEvaluation;
-import net.sf.jclal.util.thread.ThreadControl;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
 
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationRuntimeException;
@@ -61,27 +63,20 @@ public class WekaComitteClassifier extends AbstractClassifier {
 	@Override
 	public void buildClassifier(final IDataset instances) throws Exception {
 
-		ThreadControl thread = ThreadControl.defaultThreadControl(isParallel());
+		// one chunk per member of the committee
+		ParallelControl.forRange(0, classifiers.length, 1, isParallel(), new RangeTask() {
 
-		for (final Classifier classifier : classifiers) {
-
-			thread.execute(new Runnable() {
-
-				@Override
-				public void run() {
+			@Override
+			public void compute(int begin, int end) {
+				for (int i = begin; i < end; i++) {
 					try {
-						classifier.buildClassifier(instances.getDataset());
+						classifiers[i].buildClassifier(instances.getDataset());
 					} catch (Exception ex) {
 						Logger.getLogger(WekaComitteClassifier.class.getName()).log(Level.SEVERE, null, ex);
 					}
 				}
-
-			});
-
-		}
-
-		thread.end();
-		thread = null;
+			}
+		});
 	}
 
 	/**
@@ -164,36 +159,87 @@ public class WekaComitteClassifier extends AbstractClassifier {
 
 	/**
 	 * {@inheritDoc}
+	 *
+	 * Each chunk of the range is predicted member by member, the consensus of
+	 * each instance is accumulated directly in its row of the matrix.
 	 */
 	@Override
-	public AbstractEvaluation testModel(IDataset instances) {
+	public void distributionForInstances(IDataset instances, int begin, int end, final double[][] distributions) {
 
-		try {
+		if (begin >= end) {
+			return;
+		}
 
-			// test phase with the actual model
-			Evaluation evaluator = new Evaluation(new Instances(instances.getDataset(), 0));
+		final Instances data = instances.getDataset();
 
-			final Instances testData = instances.getDataset();
+		// the same for all the instances of the dataset
+		final int numClasses = data.numDistinctValues(data.classIndex());
 
-			final double[][] evaluations = new double[testData.numInstances()][];
+		ParallelControl.forRange(begin, end, isParallel(), new RangeTask() {
 
-			ThreadControl thread = ThreadControl.defaultThreadControl(isParallel());
+			@Override
+			public void compute(int begin, int end) {
 
-			for (int i = 0; i < evaluations.length; i++) {
+				try {
+
+					for (int i = begin; i < end; i++) {
 
-				final int j = i;
+						if (distributions[i] == null || distributions[i].length != numClasses) {
+							distributions[i] = new double[numClasses];
+						} else {
+							Arrays.fill(distributions[i], 0);
+						}
+					}
+
+					double sizeCommittee = classifiers.length;
+
+					for (int c = 0; c < sizeCommittee; c++) {
+
+						for (int i = begin; i < end; i++) {
 
-				thread.execute(new Runnable() {
+							double[] currentProb = classifiers[c].distributionForInstance(data.instance(i));
 
-					@Override
-					public void run() {
-						evaluations[j] = distributionForInstance(testData.instance(j));
+							double[] consensus = distributions[i];
+
+							for (int j = 0; j < consensus.length; j++) {
+								consensus[j] += currentProb[j];
+							}
+						}
 					}
-				});
+
+					for (int i = begin; i < end; i++) {
+
+						double[] consensus = distributions[i];
+
+						for (int j = 0; j < consensus.length; j++) {
+							consensus[j] /= sizeCommittee;
+						}
+					}
+
+				} catch (Exception ex) {
+
+					Logger.getLogger(WekaComitteClassifier.class.getName()).log(Level.SEVERE, null, ex);
+
+					Arrays.fill(distributions, begin, end, null);
+				}
 			}
+		});
+	}
 
-			thread.end();
-			thread = null;
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public AbstractEvaluation testModel(IDataset instances) {
+
+		try {
+
+			// test phase with the actual model
+			Evaluation evaluator = new Evaluation(new Instances(instances.getDataset(), 0));
+
+			Instances testData = instances.getDataset();
+
+			double[][] evaluations = distributionForInstances(instances);
 
 			for (int i = 0; i < evaluations.length; i++) {
 				evaluator.evaluationForSingleInstance(evaluations[i], testData.instance(i), true);
@@ -212,6 +258,38 @@ public class WekaComitteClassifier extends AbstractClassifier {
 		return null;
 	}
 
+	/**
+	 * Returns the consensus of the committee from the probabilities already
+	 * given by each member, as in {@link #distributionForInstance(Instance)}.
+	 *
+	 * @param instance
+	 *            The instance to test.
+	 * @param memberDistributions
+	 *            The probabilities given by each member of the committee.
+	 * @return The consensus probabilities
+	 */
+	public double[] consensusDistribution(Instance instance, double[][] memberDistributions) {
+
+		double[] consensus = new double[instance.dataset().numDistinctValues(instance.classIndex())];
+
+		double sizeCommittee = memberDistributions.length;
+
+		for (int i = 0; i < sizeCommittee; i++) {
+
+			double[] currentProb = memberDistributions[i];
+
+			for (int j = 0; j < consensus.length; j++) {
+				consensus[j] += currentProb[j];
+			}
+		}
+
+		for (int i = 0; i < consensus.length; i++) {
+			consensus[i] /= sizeCommittee;
+		}
+
+		return consensus;
+	}
+
 	/**
 	 * Returns the probability that has the instance of belonging to the
 	 * classes, according to an specific classifier of the committee.
@@ -243,8 +321,7 @@ public class WekaComitteClassifier extends AbstractClassifier {
         }
 
         StringBuilder extra = new StringBuilder();
-        ThreadControl c = ThreadControl.defaultThreadControl(isParallel());
-        extra.append(c.getDefaultCores()).append("cores");
+        extra.append(ParallelControl.getCores(isParallel())).append("cores");
 
         return st.toString().concat(extra.toString());
     }
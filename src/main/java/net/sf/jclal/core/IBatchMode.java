@@ -39,6 +39,20 @@ public interface IBatchMode extends JCLAL {
      */
     public List<Integer> instancesSelection(IQueryStrategy queryStrategy, List<Container> intanceUtilities);
 
+    /**
+     * Select q instances taking into account their utility and the query
+     * strategy. The utilities are given in primitive arrays, so no container
+     * is created for each candidate instance.
+     *
+     * @param queryStrategy The query strategy used
+     * @param utilities Array that stores the utility of each candidate
+     * instance
+     * @param indexes Array that stores the index of each candidate instance in
+     * the unlabeled set, or null if the candidate i is the unlabeled instance i
+     * @return A list that contains the indexes of the selected instances
+     */
+    public List<Integer> instancesSelection(IQueryStrategy queryStrategy, double[] utilities, int[] indexes);
+
     /**
      * String representation.
      *
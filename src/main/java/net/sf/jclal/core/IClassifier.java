@@ -43,6 +43,31 @@ public interface IClassifier {
      */
     public double[] distributionForInstance(Instance instance);
 
+    /**
+     * Return the probabilities of belonging to the classes of all the
+     * instances of a dataset.
+     *
+     * @param instances The instances
+     * @return the distribution of each instance, in the same order as in the
+     * dataset
+     */
+    public double[][] distributionForInstances(IDataset instances);
+
+    /**
+     * Store the probabilities of belonging to the classes of the instances in
+     * the range [begin, end) of a dataset. The distribution of the instance i
+     * is stored in distributions[i]; the rows that already have the length of
+     * the distribution are overwritten instead of being allocated again, so the
+     * same matrix can be reused between calls.
+     *
+     * @param instances The instances
+     * @param begin The first instance, inclusive
+     * @param end The last instance, exclusive
+     * @param distributions The matrix where the distributions are stored, with
+     * at least end rows
+     */
+    public void distributionForInstances(IDataset instances, int begin, int end, double[][] distributions);
+
     /**
      * Test the current model with a test set
      *
@@ -103,6 +103,17 @@ public interface IDataset extends JCLAL {
 	 */
 	public void remove(int index);
 
+	/**
+	 * Remove the instances in the specified positions. The relative order of
+	 * the remaining instances is preserved, and the instances are removed with
+	 * a single pass over the dataset instead of shifting the dataset once per
+	 * removed instance.
+	 *
+	 * @param indexes
+	 *            The positions of the instances to remove, in any order
+	 */
+	public void removeIndexes(int[] indexes);
+
 	/**
 	 * Remove all elements
 	 */
@@ -53,6 +53,19 @@ public interface IQueryStrategy extends JCLAL {
 	 */
 	public double utilityInstance(Instance instance);
 
+	/**
+	 * Test the unlabeled instance that is in the given position of the
+	 * unlabeled set. Return the utility of the instance according to the query
+	 * strategy. The strategies that need the position of the instance (e.g. to
+	 * access precomputed values) use it directly instead of looking for the
+	 * instance in the unlabeled set.
+	 *
+	 * @param instanceIndex
+	 *            the position of the instance in the unlabeled set.
+	 * @return the value calculated for the query strategy for the instance
+	 */
+	public double utilityInstance(int instanceIndex);
+
 	/**
 	 * Return the probabilities of belonging to the classes
 	 *
@@ -62,6 +75,18 @@ public interface IQueryStrategy extends JCLAL {
 	 */
 	public double[] distributionForInstance(Instance instance);
 
+	/**
+	 * Return the probabilities of belonging to the classes of the unlabeled
+	 * instance that is in the given position of the unlabeled set. The
+	 * predictions of the current model can be cached until the model is
+	 * trained again, so the returned array must not be modified.
+	 *
+	 * @param instanceIndex
+	 *            the position of the instance in the unlabeled set.
+	 * @return The distribution probabilities
+	 */
+	public double[] distributionForInstance(int instanceIndex);
+
 	/**
 	 * Get the unlabelled data
 	 *
@@ -111,6 +136,18 @@ public interface IQueryStrategy extends JCLAL {
 	 */
 	public double[] testUnlabeledData();
 
+	/**
+	 * Test the unlabeled instances in the given positions, it returns an array
+	 * with the utility of each one of them.
+	 *
+	 * @param positions
+	 *            The positions of the instances in the unlabeled set, null to
+	 *            test all the unlabeled instances.
+	 * @return The utility of the instance in positions[i] in the position i,
+	 *         or the utility of each unlabeled instance if positions is null.
+	 */
+	public double[] testUnlabeledData(int[] positions);
+
 	/**
 	 * Set the test set.
 	 *
@@ -14,7 +14,9 @@
  */
 package net.sf.jclal.dataset;
 
+import java.util.BitSet;
 import net.sf.jclal.core.IDataset;
+import weka.core.Instances;
 
 /**
  * Class that represents an abstract dataset
@@ -35,4 +37,44 @@ public abstract class AbstractDataset implements IDataset {
 		return getNumInstances() == 0;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The instances that are kept are swapped to the front of the dataset, so
+	 * the removed ones end at the tail and they are deleted from the last
+	 * position, which does not move any other instance.
+	 */
+	@Override
+	public void removeIndexes(int[] indexes) {
+
+		Instances instances = getDataset();
+
+		int size = instances.numInstances();
+
+		BitSet removed = new BitSet(size);
+
+		for (int index : indexes) {
+
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+
+			removed.set(index);
+		}
+
+		int last = removed.nextSetBit(0);
+
+		if (last < 0) {
+			return;
+		}
+
+		for (int i = removed.nextClearBit(last); i < size; i = removed.nextClearBit(i + 1)) {
+			instances.swap(last++, i);
+		}
+
+		for (int i = size - 1; i >= last; i--) {
+			instances.delete(i);
+		}
+	}
+
 }
@@ -284,11 +284,10 @@ public class MulanDataset extends AbstractDataset {
 		for (int i = indexes.length - 1; i >= 0; i--) {
 
 			dTemp.add((Instance) getDataset().instance(indexes[i]).copy());
-
-			remove(indexes[i]);
-
 		}
 
+		removeIndexes(indexes);
+
 		return dTemp;
 	}
 
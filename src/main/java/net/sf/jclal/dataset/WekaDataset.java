@@ -189,11 +189,10 @@ public class WekaDataset extends AbstractDataset {
 		for(int i= indexes.length-1; i>=0 ; i--){
 			
 			dTemp.add((Instance) dataset.instance(indexes[i]).copy());
-			
-			remove(indexes[i]);
-			
 		}
 		
+		removeIndexes(indexes);
+		
 		return dTemp;
 	}
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
  */
 package net.sf.jclal.util.dataset;
 
+import java.util.BitSet;
 import mulan.data.IterativeStratification;
 import mulan.data.LabelPowersetStratification;
 import mulan.data.MultiLabelInstances;
@@ -77,6 +78,35 @@ public class DatasetUtils {
         }
     }
 
+    /**
+     * Draw a random sample of positions without replacement (Floyd's
+     * algorithm). Only size random numbers are generated.
+     *
+     * @param randGen The method to generate random numbers
+     * @param n The number of positions
+     * @param size The size of the sample, not greater than n
+     * @return The positions of the sample in ascending order
+     */
+    public static int[] samplePositions(IRandGen randGen, int n, int size) {
+
+        BitSet sample = new BitSet(n);
+
+        for (int j = n - size; j < n; j++) {
+
+            int t = Math.min(j, randGen.choose(0, j + 1));
+
+            sample.set(sample.get(t) ? j : t);
+        }
+
+        int[] positions = new int[size];
+
+        for (int i = sample.nextSetBit(0), k = 0; i >= 0; i = sample.nextSetBit(i + 1)) {
+            positions[k++] = i;
+        }
+
+        return positions;
+    }
+
     /**
      * Copy the attributes of an instance without including the class attribute
      *
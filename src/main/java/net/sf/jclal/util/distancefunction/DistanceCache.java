@@ -0,0 +1,384 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import weka.core.Instances;
+import weka.core.NormalizableDistance;
+import weka.core.Utils;
+
+/**
+ * Persistent cache of the distances among the instances of a dataset.
+ *
+ * The distances among the instances of a dataset are computed once and
+ * stored in a file of the cache directory. The dataset is formed by the pool
+ * and the given instances, usually the unlabeled and labeled sets, the test
+ * set must not be included. The name of the file is a checksum of the
+ * instances, the class of the distance function and its options, so the file
+ * is only shared by the runs over the same labeled and unlabeled instances,
+ * e.g. several strategies or repetitions with the same seed and split. Each
+ * fold of a cross validation and each seed that changes the split have other
+ * training instances, so they compute and store their own file.
+ * The container of a pool of instances is a view of the sub-matrix of its
+ * rows, the file is mapped in memory and it is not copied.
+ *
+ * The instances of the dataset are sorted by their values and the repeated
+ * ones are removed, so the file does not depend on the order of the
+ * instances. The attribute ranges of the distance function are computed from
+ * the whole dataset and not from the pool, otherwise the distances could not
+ * be shared among the pools of the iterations of a run.
+ *
+ * The size of the directory is not limited and the files are never removed.
+ * Each file stores n(n-1)/2 distances in double precision and there is a file
+ * per fold and split, e.g. 10 files per seed with a 10-fold cross validation,
+ * so the directory must be cleaned manually.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class DistanceCache {
+
+	/**
+	 * The first bytes of a file of the cache, "JDC" and the version of the
+	 * format.
+	 */
+	private static final int MAGIC = 0x4A444331;
+
+	/**
+	 * The size in bytes of the header: the magic number, the number of
+	 * instances and the number of distances.
+	 */
+	private static final int HEADER = 16;
+
+	/**
+	 * The extension of the files of the cache.
+	 */
+	private static final String EXTENSION = ".dist";
+
+	/**
+	 * The order of the instances by their values.
+	 */
+	private static final Comparator<double[]> BY_VALUES = new Comparator<double[]>() {
+
+		@Override
+		public int compare(double[] first, double[] second) {
+
+			for (int i = 0; i < Math.min(first.length, second.length); i++) {
+
+				int comparison = Double.compare(first[i], second[i]);
+
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+
+			return first.length - second.length;
+		}
+	};
+
+	/**
+	 * The directory of the files.
+	 */
+	private final File directory;
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            The directory of the files, it is created if it does not
+	 *            exist
+	 */
+	public DistanceCache(String directory) {
+		this(new File(directory));
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param directory
+	 *            The directory of the files, it is created if it does not
+	 *            exist
+	 */
+	public DistanceCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Get the directory of the files
+	 *
+	 * @return The directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Get the container of the distances among the instances of a pool. The
+	 * dataset is formed by the pool and the rest of given instances, its
+	 * distances are read from the cache or computed and stored if they are not
+	 * in the cache yet.
+	 *
+	 * @param pool
+	 *            The instances of the container
+	 * @param distanceFunction
+	 *            The distance function, its ranges are set to the ones of the
+	 *            dataset
+	 * @param isParallel
+	 *            Whether the distances and the accumulative values are
+	 *            computed in parallel
+	 * @param others
+	 *            The rest of instances of the dataset, with the same header
+	 *            as the pool, null values are ignored. The test instances
+	 *            must not be given, their values would be used in the
+	 *            attribute ranges
+	 * @return The container
+	 * @throws Exception
+	 *             If the file can not be read or written
+	 */
+	public DistanceContainer getContainer(Instances pool, NormalizableDistance distanceFunction, boolean isParallel,
+			Instances... others) throws Exception {
+
+		Instances all = new Instances(pool);
+
+		for (Instances instances : others) {
+			if (instances != null) {
+				all.addAll(instances);
+			}
+		}
+
+		// The instances of the dataset sorted by their values, without
+		// repetitions
+		final double[][] values = new double[all.numInstances()][];
+
+		Integer[] order = new Integer[values.length];
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = all.instance(i).toDoubleArray();
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return BY_VALUES.compare(values[first], values[second]);
+			}
+		});
+
+		Instances dataset = new Instances(pool, values.length);
+
+		double[][] datasetValues = new double[values.length][];
+
+		int size = 0;
+
+		for (int i = 0; i < order.length; i++) {
+
+			if (size == 0 || BY_VALUES.compare(datasetValues[size - 1], values[order[i]]) != 0) {
+				dataset.add(all.instance(order[i]));
+				datasetValues[size++] = values[order[i]];
+			}
+		}
+
+		datasetValues = Arrays.copyOf(datasetValues, size);
+
+		distanceFunction.setInstances(dataset);
+
+		File file = new File(directory, checksum(dataset, datasetValues, distanceFunction) + EXTENSION);
+
+		TriangularStorage distances = open(file, size);
+
+		if (distances == null) {
+			distances = store(file, dataset, distanceFunction, isParallel);
+		}
+
+		// The row of each instance of the pool
+		int[] rows = new int[pool.numInstances()];
+
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = Arrays.binarySearch(datasetValues, pool.instance(i).toDoubleArray(), BY_VALUES);
+		}
+
+		return new DistanceContainer(TriangularStorage.view(distances, rows), pool.numAttributes(), isParallel);
+	}
+
+	/**
+	 * The checksum of the header and the sorted values of the dataset, and the
+	 * class and options of the distance function.
+	 *
+	 * @param dataset
+	 *            The dataset
+	 * @param values
+	 *            The values of the instances of the dataset
+	 * @param distanceFunction
+	 *            The distance function
+	 * @return The hexadecimal checksum
+	 * @throws Exception
+	 *             If the checksum algorithm is not available
+	 */
+	private static String checksum(Instances dataset, double[][] values, NormalizableDistance distanceFunction)
+			throws Exception {
+
+		MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+		Charset charset = Charset.forName("UTF-8");
+
+		digest.update(distanceFunction.getClass().getName().getBytes(charset));
+		digest.update(Utils.joinOptions(distanceFunction.getOptions()).getBytes(charset));
+
+		// The relation name is not used, it can be changed by the sampling
+		for (int a = 0; a < dataset.numAttributes(); a++) {
+			digest.update(dataset.attribute(a).toString().getBytes(charset));
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(8 * dataset.numAttributes() + 4);
+
+		for (double[] instance : values) {
+
+			buffer.clear();
+			buffer.putInt(instance.length);
+
+			for (double value : instance) {
+				buffer.putDouble(value);
+			}
+
+			digest.update(buffer.array(), 0, buffer.position());
+		}
+
+		StringBuilder hex = new StringBuilder();
+
+		for (byte b : digest.digest()) {
+			hex.append(String.format("%02x", b & 0xff));
+		}
+
+		return hex.toString();
+	}
+
+	/**
+	 * Maps the distances of a file of the cache.
+	 *
+	 * @param file
+	 *            The file
+	 * @param size
+	 *            The number of instances of the dataset
+	 * @return The distances, null if the file does not exist or it is not
+	 *         valid
+	 * @throws IOException
+	 *             If the file can not be read
+	 */
+	private static TriangularStorage open(File file, int size) throws IOException {
+
+		if (!file.isFile()) {
+			return null;
+		}
+
+		long length = (long) size * (size - 1) / 2;
+
+		RandomAccessFile access = new RandomAccessFile(file, "r");
+
+		try {
+			if (access.length() != HEADER + length * 8 || access.readInt() != MAGIC || access.readInt() != size
+					|| access.readLong() != length) {
+
+				Logger.getLogger(DistanceCache.class.getName()).log(Level.WARNING,
+						"The file " + file + " of the distance cache is not valid, it will be rebuilt");
+
+				return null;
+			}
+		} finally {
+			access.close();
+		}
+
+		return TriangularStorage.mapped(file, HEADER, size, true);
+	}
+
+	/**
+	 * Computes the distances among the instances of the dataset and stores
+	 * them in a file of the cache. The distances are written in a temporal
+	 * file that is renamed when it is complete, so other processes never see
+	 * a partial file.
+	 *
+	 * @param file
+	 *            The file
+	 * @param dataset
+	 *            The dataset
+	 * @param distanceFunction
+	 *            The distance function
+	 * @param isParallel
+	 *            Whether the distances are computed in parallel
+	 * @return The distances
+	 * @throws IOException
+	 *             If the file can not be written
+	 */
+	private TriangularStorage store(File file, Instances dataset, NormalizableDistance distanceFunction,
+			boolean isParallel) throws IOException {
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("The directory " + directory + " of the distance cache can not be created");
+		}
+
+		int size = dataset.numInstances();
+
+		long length = (long) size * (size - 1) / 2;
+
+		File temporal = File.createTempFile(file.getName(), ".tmp", directory);
+
+		try {
+
+			RandomAccessFile access = new RandomAccessFile(temporal, "rw");
+
+			try {
+				access.setLength(HEADER + length * 8);
+				access.writeInt(MAGIC);
+				access.writeInt(size);
+				access.writeLong(length);
+			} finally {
+				access.close();
+			}
+
+			TriangularStorage distances = TriangularStorage.mapped(temporal, HEADER, size, false);
+
+			DistanceContainer.computeDistances(dataset, distanceFunction, isParallel, distances);
+
+			distances.destroy();
+
+			try {
+				Files.move(temporal.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException ex) {
+				// Other process could store the same file at the same time
+				if (!file.isFile()) {
+					throw ex;
+				}
+			}
+
+		} finally {
+			if (temporal.exists() && !temporal.delete()) {
+				temporal.deleteOnExit();
+			}
+		}
+
+		return TriangularStorage.mapped(file, HEADER, size, true);
+	}
+}
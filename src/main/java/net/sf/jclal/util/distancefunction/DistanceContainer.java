@@ -16,17 +16,27 @@
 package net.sf.jclal.util.distancefunction;
 
 import java.util.ArrayList;
-import net.sf.jclal.util.matrixFile.Matrix;
-import net.sf.jclal.util.sort.Container;
 import net.sf.jclal.util.sort.IndexValueContainer;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.NormalizableDistance;
+import weka.core.SerializedObject;
 
 /**
  * Implementation of DistanceContainer.
  *
  * Class to store the distance between a set of instances
  *
+ * The distances stored in main memory can be computed in parallel by blocks of
+ * rows, each thread with its own copy of the distance function since the Weka
+ * distance functions keep mutable state. The normalized distances and the
+ * accumulative values are the same as the ones computed sequentially.
+ *
+ * The distances are kept in a {@link TriangularStorage}, packed in main memory,
+ * in double or single precision, or over a file.
+ *
  * @author Oscar Gabriel Reyes Pupo
  * @author Eduardo Perez Perdomo
  *
@@ -34,13 +44,9 @@ import weka.core.NormalizableDistance;
 public class DistanceContainer extends IndexValueContainer {
 
 	/**
-	 * distance matrix
-	 */
-	private double[][] distance;
-	/**
-	 * distance matrix stored over file
+	 * distance matrix, in main memory or over file
 	 */
-	private Matrix distanceMatrix;
+	private TriangularStorage storage;
 
 	/**
 	 * Number of attributes
@@ -58,22 +64,84 @@ public class DistanceContainer extends IndexValueContainer {
 	private boolean matrixOverFile = false;
 
 	/**
-	 * Get the distance matrix
+	 * Whether the accumulative values are updated in parallel when instances
+	 * are removed
+	 */
+	private boolean parallel = false;
+
+	/**
+	 * The number of instances whose accumulative values are computed
+	 * together.
+	 */
+	private static final int ACUMULATIVE_BLOCK = 256;
+
+	/**
+	 * Get a copy of the distance matrix, the row r has the distances with the
+	 * instances r + 1, ..., size - 1
 	 * 
 	 * @return The distance matrix
+	 * @deprecated The distances are not stored by rows, use
+	 *             {@link #getStorage()}
 	 */
+	@Deprecated
 	public double[][] getDistance() {
+
+		if (storage == null) {
+			return null;
+		}
+
+		int m = storage.size - 1;
+
+		double[][] distance = new double[Math.max(m, 0)][];
+
+		for (int r = 0; r < m; r++) {
+			distance[r] = new double[m - r];
+			for (int c = 0; c < distance[r].length; c++) {
+				distance[r][c] = storage.get(r, c);
+			}
+		}
+
 		return distance;
 	}
 
 	/**
-	 * Set the distance matrix
+	 * Set the distance matrix, the row r has the distances with the instances
+	 * r + 1, ..., size - 1
 	 * 
 	 * @param distance
 	 *            the distance matrix
+	 * @deprecated The distances are not stored by rows, use
+	 *             {@link #setStorage(TriangularStorage)}
 	 */
+	@Deprecated
 	public void setDistance(double[][] distance) {
-		this.distance = distance;
+
+		storage = TriangularStorage.packed(distance.length + 1, false);
+
+		for (int r = 0; r < distance.length; r++) {
+			for (int c = 0; c < distance[r].length; c++) {
+				storage.set(r, c, distance[r][c]);
+			}
+		}
+	}
+
+	/**
+	 * Get the storage of the distances
+	 *
+	 * @return The storage
+	 */
+	public TriangularStorage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Set the storage of the distances
+	 *
+	 * @param storage
+	 *            The storage
+	 */
+	public void setStorage(TriangularStorage storage) {
+		this.storage = storage;
 	}
 
 	/**
@@ -106,6 +174,78 @@ public class DistanceContainer extends IndexValueContainer {
 	 */
 	public DistanceContainer(Instances instances, NormalizableDistance distanceFunction) {
 
+		computeInMemory(instances, distanceFunction, false, false);
+	}
+
+	/**
+	 * Constructor by default
+	 *
+	 * @param instances
+	 *            dataset
+	 * @param distanceFunction
+	 *            The distance function used to calculate the distance
+	 * @param matrixOverFile
+	 *            Whether the matrix will be stored into a file
+	 * @throws java.lang.Exception
+	 *             The exception that will be launched
+	 */
+	public DistanceContainer(Instances instances, NormalizableDistance distanceFunction, boolean matrixOverFile)
+			throws Exception {
+
+		this(instances, distanceFunction, matrixOverFile, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param instances
+	 *            dataset
+	 * @param distanceFunction
+	 *            The distance function used to calculate the distance
+	 * @param matrixOverFile
+	 *            Whether the matrix will be stored into a file
+	 * @param isParallel
+	 *            Whether the distances stored in main memory are computed in
+	 *            parallel
+	 * @throws java.lang.Exception
+	 *             The exception that will be launched
+	 */
+	public DistanceContainer(Instances instances, NormalizableDistance distanceFunction, boolean matrixOverFile,
+			boolean isParallel) throws Exception {
+
+		this(instances, distanceFunction, matrixOverFile, isParallel, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param instances
+	 *            dataset
+	 * @param distanceFunction
+	 *            The distance function used to calculate the distance
+	 * @param matrixOverFile
+	 *            Whether the matrix will be stored into a file
+	 * @param isParallel
+	 *            Whether the distances stored in main memory are computed in
+	 *            parallel
+	 * @param singlePrecision
+	 *            Whether the distances stored in main memory are stored as
+	 *            float
+	 * @throws java.lang.Exception
+	 *             The exception that will be launched
+	 */
+	public DistanceContainer(Instances instances, NormalizableDistance distanceFunction, boolean matrixOverFile,
+			boolean isParallel, boolean singlePrecision) throws Exception {
+
+		this.matrixOverFile = matrixOverFile;
+
+		this.parallel = isParallel;
+
+		if (!matrixOverFile) {
+			computeInMemory(instances, distanceFunction, isParallel, singlePrecision);
+			return;
+		}
+
 		size = instances.numInstances();
 
 		indexesChanges = new int[size];
@@ -116,23 +256,20 @@ public class DistanceContainer extends IndexValueContainer {
 
 		int m = size - 1;
 
-		distance = new double[m][];
-
-		int temp;
-
-		double valueTemp;
+		storage = TriangularStorage.overFile(size);
 
 		maxDistance = Double.MIN_VALUE;
 		minDistance = Double.MAX_VALUE;
 
+		int temp;
+		double valueTemp;
 		for (int i = 0; i < m; ++i) {
 
-			distance[i] = new double[size - i - 1];
-
 			// In the begining the index and the value are equals
 			indexesChanges[i] = i;
 
 			for (int j = i + 1; j < size; ++j) {
+
 				temp = j - i - 1;
 
 				valueTemp = distanceFunction.distance(instances.instance(i), instances.instance(j));
@@ -145,10 +282,9 @@ public class DistanceContainer extends IndexValueContainer {
 
 				setStoreDistance(i, temp, valueTemp);
 
-				// accumulative distance
+				// acumulative distance
 				// acumulativeValue[i] += valueTemp;
 				// acumulativeValue[j] += valueTemp;
-
 			}
 		}
 
@@ -158,21 +294,19 @@ public class DistanceContainer extends IndexValueContainer {
 	}
 
 	/**
-	 * Constructor by default
+	 * Computes the distances in main memory, by blocks of rows.
 	 *
 	 * @param instances
 	 *            dataset
 	 * @param distanceFunction
 	 *            The distance function used to calculate the distance
-	 * @param matrixOverFile
-	 *            Whether the matrix will be stored into a file
-	 * @throws java.lang.Exception
-	 *             The exception that will be launched
+	 * @param isParallel
+	 *            Whether the blocks are computed in parallel
+	 * @param singlePrecision
+	 *            Whether the distances are stored as float
 	 */
-	public DistanceContainer(Instances instances, NormalizableDistance distanceFunction, boolean matrixOverFile)
-			throws Exception {
-
-		this.matrixOverFile = matrixOverFile;
+	private void computeInMemory(final Instances instances, final NormalizableDistance distanceFunction,
+			final boolean isParallel, boolean singlePrecision) {
 
 		size = instances.numInstances();
 
@@ -182,51 +316,278 @@ public class DistanceContainer extends IndexValueContainer {
 
 		numAttributes = instances.numAttributes();
 
-		int m = size - 1;
-
-		if (matrixOverFile) {
-			distanceMatrix = new Matrix(size, size, true);
-		} else {
-			distance = new double[m][];
+		// In the begining the index and the value are equals
+		for (int i = 0; i < size; ++i) {
+			indexesChanges[i] = i;
 		}
 
-		maxDistance = Double.MIN_VALUE;
-		minDistance = Double.MAX_VALUE;
+		final int m = size - 1;
 
-		int temp;
-		double valueTemp;
-		for (int i = 0; i < m; ++i) {
+		final TriangularStorage distance = TriangularStorage.packed(size, singlePrecision);
+
+		storage = distance;
 
-			if (!matrixOverFile) {
-				distance[i] = new double[size - i - 1];
+		double[] bounds = computeDistances(instances, distanceFunction, isParallel, distance);
+
+		minDistance = bounds[0];
+		maxDistance = bounds[1];
+
+		final double range = maxDistance - minDistance;
+
+		// To scale all distances to [0,1] range
+		ParallelControl.forRange(0, m, isParallel, new RangeTask() {
+
+			@Override
+			public void compute(int begin, int end) {
+				for (int i = begin; i < end; ++i) {
+
+					for (int c = 0; c < size - i - 1; ++c) {
+						distance.set(i, c, (distance.get(i, c) - minDistance) / range);
+					}
+				}
 			}
+		});
 
-			// In the begining the index and the value are equals
+		accumulate(isParallel);
+	}
+
+	/**
+	 * Constructor from distances already computed and not scaled, e.g. a view
+	 * of a {@link DistanceCache}. The distances are scaled to [0,1] by a view
+	 * of the given storage, so they are not copied.
+	 *
+	 * @param distances
+	 *            The distances among the instances
+	 * @param numAttributes
+	 *            The number of attributes of the instances
+	 * @param isParallel
+	 *            Whether the accumulative values are computed in parallel
+	 */
+	public DistanceContainer(final TriangularStorage distances, int numAttributes, boolean isParallel) {
+
+		size = distances.size();
+
+		indexesChanges = new int[size];
+
+		acumulativeValue = new double[size];
+
+		this.numAttributes = numAttributes;
+
+		this.parallel = isParallel;
+
+		for (int i = 0; i < size; ++i) {
 			indexesChanges[i] = i;
+		}
 
-			for (int j = i + 1; j < size; ++j) {
+		// the minimum and the maximum distance of the blocks
+		final double[] bounds = { Double.MAX_VALUE, Double.MIN_VALUE };
 
-				temp = j - i - 1;
+		ParallelControl.forRange(0, size - 1, isParallel, new RangeTask() {
 
-				valueTemp = distanceFunction.distance(instances.instance(i), instances.instance(j));
+			@Override
+			public void compute(int begin, int end) {
 
-				if (valueTemp > maxDistance)
-					maxDistance = valueTemp;
+				double min = Double.MAX_VALUE;
+				double max = Double.MIN_VALUE;
 
-				if (valueTemp < minDistance)
-					minDistance = valueTemp;
+				for (int i = begin; i < end; ++i) {
 
-				setStoreDistance(i, temp, valueTemp);
+					for (int c = 0; c < size - i - 1; ++c) {
 
-				// acumulative distance
-				// acumulativeValue[i] += valueTemp;
-				// acumulativeValue[j] += valueTemp;
+						double valueTemp = distances.get(i, c);
+
+						if (valueTemp > max)
+							max = valueTemp;
+
+						if (valueTemp < min)
+							min = valueTemp;
+					}
+				}
+
+				synchronized (bounds) {
+					bounds[0] = Math.min(bounds[0], min);
+					bounds[1] = Math.max(bounds[1], max);
+				}
+			}
+		});
+
+		minDistance = bounds[0];
+		maxDistance = bounds[1];
+
+		storage = TriangularStorage.scaled(distances, minDistance, maxDistance - minDistance);
+
+		accumulate(isParallel);
+	}
+
+	/**
+	 * Computes the distances among the instances, by ranges of rows, without
+	 * scaling them. In parallel the rows are split in one range per thread of
+	 * the shared pool, with the same number of distances, and each range uses
+	 * its own copy of the distance function, which is not used after the
+	 * call.
+	 *
+	 * @param instances
+	 *            dataset
+	 * @param distanceFunction
+	 *            The distance function used to calculate the distance
+	 * @param isParallel
+	 *            Whether the ranges are computed in parallel
+	 * @param distance
+	 *            The storage of the distances
+	 * @return The minimum and the maximum distance
+	 */
+	static double[] computeDistances(final Instances instances, final NormalizableDistance distanceFunction,
+			boolean isParallel, final TriangularStorage distance) {
+
+		final int size = instances.numInstances();
+
+		// the minimum and the maximum distance of the ranges
+		final double[] bounds = { Double.MAX_VALUE, Double.MIN_VALUE };
+
+		final int count = Math.max(1, Math.min(ParallelControl.getCores(isParallel), size - 1));
+
+		ParallelControl.forRange(0, count, 1, isParallel, new RangeTask() {
+
+			@Override
+			public void compute(int beginTask, int endTask) {
+
+				// the function is not shared among threads
+				NormalizableDistance function = count == 1 ? distanceFunction : copyOf(distanceFunction);
+
+				double min = Double.MAX_VALUE;
+				double max = Double.MIN_VALUE;
+
+				for (int i = firstRow(size, beginTask, count); i < firstRow(size, endTask, count); ++i) {
+
+					Instance first = instances.instance(i);
+
+					for (int j = i + 1; j < size; ++j) {
+
+						double valueTemp = function.distance(first, instances.instance(j));
+
+						if (valueTemp > max)
+							max = valueTemp;
+
+						if (valueTemp < min)
+							min = valueTemp;
+
+						distance.set(i, j - i - 1, valueTemp);
+					}
+				}
+
+				synchronized (bounds) {
+					bounds[0] = Math.min(bounds[0], min);
+					bounds[1] = Math.max(bounds[1], max);
+				}
+			}
+		});
+
+		return bounds;
+	}
+
+	/**
+	 * The first row of a range of the upper triangle split in ranges with the
+	 * same number of distances.
+	 *
+	 * @param size
+	 *            The number of instances
+	 * @param range
+	 *            The range, from 0 to count, count gives the end of the last
+	 *            range
+	 * @param count
+	 *            The number of ranges
+	 * @return The first row of the range
+	 */
+	static int firstRow(int size, int range, int count) {
+
+		long total = (long) size * (size - 1) / 2;
+
+		long target = total * range / count;
+
+		// the first row whose previous rows have at least target distances
+		int low = 0;
+		int high = Math.max(0, size - 1);
+
+		while (low < high) {
+
+			int row = (low + high) >>> 1;
+
+			if ((long) row * (2L * size - row - 1) / 2 < target) {
+				low = row + 1;
+			} else {
+				high = row;
 			}
 		}
 
-		indexesChanges[size - 1] = size - 1;
+		return low;
+	}
 
-		scaleMinMax();
+	/**
+	 * Computes the accumulative values from the scaled distances, by blocks of
+	 * instances.
+	 *
+	 * @param isParallel
+	 *            Whether the blocks are computed in parallel
+	 */
+	private void accumulate(boolean isParallel) {
+
+		final int m = size - 1;
+
+		final TriangularStorage distance = storage;
+
+		// accumulative distance, the distances of each instance are added in
+		// the order of the other instance, as in scaleMinMax
+		int blocks = (size + ACUMULATIVE_BLOCK - 1) / ACUMULATIVE_BLOCK;
+
+		ParallelControl.forRange(0, blocks, 1, isParallel, new RangeTask() {
+
+			@Override
+			public void compute(int beginBlock, int endBlock) {
+
+				for (int block = beginBlock; block < endBlock; ++block) {
+
+					int begin = block * ACUMULATIVE_BLOCK;
+
+					int end = Math.min(begin + ACUMULATIVE_BLOCK, size);
+
+					// the distances with the previous instances, stored in
+					// their rows
+					for (int y = 0; y < end - 1; ++y) {
+
+						for (int x = Math.max(begin, y + 1); x < end; ++x) {
+							acumulativeValue[x] += distance.get(y, x - y - 1);
+						}
+					}
+
+					// the distances with the next instances
+					for (int x = begin; x < end && x < m; ++x) {
+
+						double sum = acumulativeValue[x];
+
+						for (int c = 0; c < size - x - 1; ++c) {
+							sum += distance.get(x, c);
+						}
+
+						acumulativeValue[x] = sum;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Copies a distance function.
+	 *
+	 * @param distanceFunction
+	 *            The distance function
+	 * @return The copy
+	 */
+	private static NormalizableDistance copyOf(NormalizableDistance distanceFunction) {
+		try {
+			return (NormalizableDistance) new SerializedObject(distanceFunction).getObject();
+		} catch (Exception ex) {
+			throw new IllegalStateException("The distance function can not be copied", ex);
+		}
 	}
 
 	// To scale all distances to [0,1] range
@@ -264,11 +625,7 @@ public class DistanceContainer extends IndexValueContainer {
 	 *            distance value
 	 */
 	protected void setStoreDistance(int r, int c, double value) {
-		if (matrixOverFile) {
-			distanceMatrix.set(r, c, value);
-		} else {
-			distance[r][c] = value;
-		}
+		storage.set(r, c, value);
 	}
 
 	/**
@@ -281,11 +638,7 @@ public class DistanceContainer extends IndexValueContainer {
 	 * @return the distance value
 	 */
 	protected double getStoreDistance(int r, int c) {
-		if (matrixOverFile) {
-			return distanceMatrix.get(r, c);
-		} else {
-			return distance[r][c];
-		}
+		return storage.get(r, c);
 	}
 
 	/**
@@ -298,10 +651,21 @@ public class DistanceContainer extends IndexValueContainer {
 	 * @return Distance value among x and y.
 	 */
 	public double getDistance(int indexX, int indexY) {
+		return getOriginalDistance(indexesChanges[indexX], indexesChanges[indexY]);
+	}
 
-		int posX = indexesChanges[indexX];
-
-		int posY = indexesChanges[indexY];
+	/**
+	 * Returns the value of the distance between x and y, given by their
+	 * original indexes, i.e. their positions in the set of instances used to
+	 * build the container.
+	 *
+	 * @param posX
+	 *            The original index of the instance x.
+	 * @param posY
+	 *            The original index of the instance y.
+	 * @return Distance value among x and y.
+	 */
+	protected double getOriginalDistance(int posX, int posY) {
 
 		if (posX == posY) {
 			return 0;
@@ -318,19 +682,56 @@ public class DistanceContainer extends IndexValueContainer {
 	/**
 	 * Update the indexes. It is used to accelerate the process.
 	 *
+	 * The accumulative values of the remaining instances are updated in a
+	 * single pass, in parallel if the container was built in parallel, and the
+	 * indexes are compacted once. The result is the same as removing the
+	 * instances one by one with {@link #updateIndex(int)}.
+	 *
 	 * @param removedIndexes
 	 *            Array that contains the indexes that will be removed
 	 */
 	public void updateIndexes(ArrayList<Integer> removedIndexes) {
 
-		ArrayList<Container> ordered = obtainOrdered(removedIndexes);
+		final int[] removed = obtainOrderedIndexes(removedIndexes);
 
-		for (Container indexToRemove : ordered) {
+		if (removed.length == 0) {
+			return;
+		}
 
-			updateIndex(Integer.parseInt(indexToRemove.getValue().toString()));
+		final boolean[] isRemoved = new boolean[size];
 
+		for (int index : removed) {
+			isRemoved[index] = true;
 		}
 
+		// Each remaining instance subtracts its distances with the removed
+		// instances from the biggest index to the smallest, as when they are
+		// removed one by one
+		ParallelControl.forRange(0, size, parallel, new RangeTask() {
+
+			@Override
+			public void compute(int begin, int end) {
+
+				for (int i = begin; i < end; i++) {
+
+					if (isRemoved[i]) {
+						continue;
+					}
+
+					int pos = indexesChanges[i];
+
+					double value = acumulativeValue[pos];
+
+					for (int index : removed) {
+						value -= getDistance(index, i);
+					}
+
+					acumulativeValue[pos] = value;
+				}
+			}
+		});
+
+		deleteIndexes(removed);
 	}
 
 	/**
@@ -354,16 +755,16 @@ public class DistanceContainer extends IndexValueContainer {
 	}
 
 	/**
-	 * Free the memory
+	 * Free the memory, and the mapping of the file when the distances are read
+	 * from the cache
 	 */
 	public void destroy() {
-		if (distanceMatrix != null) {
-			distanceMatrix.destroy();
+		if (storage != null) {
+			storage.destroy();
 		}
 
 		acumulativeValue = null;
 		indexesChanges = null;
-		distance = null;
-		distanceMatrix = null;
+		storage = null;
 	}
 }
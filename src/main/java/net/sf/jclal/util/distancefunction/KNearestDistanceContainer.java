@@ -17,17 +17,22 @@
 package net.sf.jclal.util.distancefunction;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
 
-import net.sf.jclal.util.sort.Container;
-import net.sf.jclal.util.sort.OrderUtils;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
 import weka.core.Instances;
 import weka.core.NormalizableDistance;
 
 /**
  * This class extends DistanceContainer class and allows to store the distance
  * between a particular instance and its k-nearest neighbors.
+ *
+ * The neighbors of each instance are selected from the stored distances with
+ * a bounded insertion over primitive arrays, the rows are processed in
+ * parallel if the container is built in parallel. The neighbors with the same
+ * distance are taken in the order of their indexes. Each instance keeps the
+ * list of the instances that have it as neighbor, so a removal only updates
+ * those instances.
  * 
  * @author Oscar Gabriel Reyes Pupo
  *
@@ -36,7 +41,22 @@ import weka.core.NormalizableDistance;
 public class KNearestDistanceContainer extends DistanceContainer {
 
 	private double[] accumulativeDistanceKNearest;
-	private Set<Integer>[] kNearest;
+
+	/**
+	 * The original indexes of the k-nearest neighbors of each instance, by
+	 * original index, sorted by distance. A removed neighbor is set to -1 and
+	 * the row of a removed instance is null.
+	 */
+	private int[][] kNearest;
+
+	/**
+	 * The instances that have the instance i as neighbor are in the
+	 * positions reverseStart[i], ..., reverseStart[i + 1] - 1 of
+	 * reverseNearest.
+	 */
+	private int[] reverseStart;
+
+	private int[] reverseNearest;
 
 	private int k;
 
@@ -54,33 +74,34 @@ public class KNearestDistanceContainer extends DistanceContainer {
 
 		super(instances, distanceFunction);
 
-		accumulativeDistanceKNearest = new double[size];
-		kNearest = new HashSet[size];
 		this.k = k;
 
-		// Compute the k-nearest neighbors of each instance
-
-		for (int i = 0; i < size; i++) {
-
-			ArrayList<Container> array = new ArrayList<Container>(k);
-			kNearest[i] = new HashSet<Integer>();
-
-			for (int j = 0; j < size; j++) {
-
-				if (i != j)
-					array.add(new Container<Integer>(getDistance(i, j), j));
+		computeNearest(false);
+	}
 
-			}
+	/**
+	 * Constructor
+	 * 
+	 * @param instances
+	 *            The instances
+	 * @param distanceFunction
+	 *            The distance function to be used
+	 * @param k
+	 *            The number of k nearest neighbors
+	 * @param isParallel
+	 *            Whether the distances and the neighbors are computed in
+	 *            parallel
+	 * @throws Exception
+	 *             Launch an exception in case that an error occurs.
+	 */
+	public KNearestDistanceContainer(Instances instances, NormalizableDistance distanceFunction, int k,
+			boolean isParallel) throws Exception {
 
-			OrderUtils.mergeSort(array, false);
+		super(instances, distanceFunction, false, isParallel);
 
-			// Fill the distances of the k-nearest neighbors of i
+		this.k = k;
 
-			for (int pos = 0; pos < k; pos++) {
-				accumulativeDistanceKNearest[i] += array.get(pos).getKey();
-				kNearest[i].add(Integer.parseInt(array.get(pos).getValue().toString()));
-			}
-		}
+		computeNearest(isParallel);
 	}
 
 	/**
@@ -103,25 +124,127 @@ public class KNearestDistanceContainer extends DistanceContainer {
 
 	}
 
+	/**
+	 * Computes the k-nearest neighbors of each instance and the lists of
+	 * reverse neighbors.
+	 *
+	 * @param isParallel
+	 *            Whether the rows are processed in parallel
+	 */
+	private void computeNearest(boolean isParallel) {
+
+		final int n = size;
+
+		// The number of neighbors, at most the rest of instances
+		final int neighbors = Math.max(0, Math.min(k, n - 1));
+
+		accumulativeDistanceKNearest = new double[n];
+		kNearest = new int[n][];
+
+		ParallelControl.forRange(0, n, isParallel, new RangeTask() {
+
+			@Override
+			public void compute(int begin, int end) {
+
+				double[] distances = new double[neighbors];
+
+				for (int i = begin; i < end; i++) {
+
+					int[] nearest = new int[neighbors];
+
+					int count = 0;
+
+					for (int j = 0; j < n; j++) {
+
+						if (i == j) {
+							continue;
+						}
+
+						double distance = getOriginalDistance(i, j);
+
+						if (count == neighbors && (count == 0 || !(distance < distances[count - 1]))) {
+							continue;
+						}
+
+						// The position after the neighbors with lower or equal
+						// distance
+						int pos = count == neighbors ? count - 1 : count++;
+
+						while (pos > 0 && distance < distances[pos - 1]) {
+							distances[pos] = distances[pos - 1];
+							nearest[pos] = nearest[pos - 1];
+							--pos;
+						}
+
+						distances[pos] = distance;
+						nearest[pos] = j;
+					}
+
+					for (int pos = 0; pos < neighbors; pos++) {
+						accumulativeDistanceKNearest[i] += distances[pos];
+					}
+
+					kNearest[i] = nearest;
+				}
+			}
+		});
+
+		// The reverse neighbors
+		reverseStart = new int[n + 1];
+
+		for (int[] nearest : kNearest) {
+			for (int j : nearest) {
+				++reverseStart[j + 1];
+			}
+		}
+
+		for (int i = 0; i < n; i++) {
+			reverseStart[i + 1] += reverseStart[i];
+		}
+
+		reverseNearest = new int[reverseStart[n]];
+
+		int[] next = new int[n];
+
+		for (int i = 0; i < n; i++) {
+			for (int j : kNearest[i]) {
+				reverseNearest[reverseStart[j] + next[j]++] = i;
+			}
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	public void updateIndexes(ArrayList<Integer> removedIndexes) {
 
-		for (int index : removedIndexes) {
+		if (kNearest != null) {
+
+			for (int index : removedIndexes) {
 
-			int originalIndex = index(index);
+				int originalIndex = index(index);
 
-			kNearest[originalIndex] = null;
+				kNearest[originalIndex] = null;
 
-			for (int u = 0; u < size; u++) {
+				// Only the instances that have the removed instance as
+				// neighbor are updated
+				for (int r = reverseStart[originalIndex]; r < reverseStart[originalIndex + 1]; r++) {
+
+					int originalU = reverseNearest[r];
+
+					int[] nearest = kNearest[originalU];
+
+					if (nearest == null) {
+						continue;
+					}
 
-				int originalU = index(u);
+					for (int pos = 0; pos < nearest.length; pos++) {
 
-				if (kNearest[originalU] != null) {
-					if (kNearest[originalU].contains(originalIndex)) {
-						kNearest[originalU].remove(originalIndex);
-						accumulativeDistanceKNearest[originalU] -= getDistance(u, index);
+						if (nearest[pos] == originalIndex) {
+							nearest[pos] = -1;
+							accumulativeDistanceKNearest[originalU] -= getOriginalDistance(originalU, originalIndex);
+							break;
+						}
 					}
 				}
 			}
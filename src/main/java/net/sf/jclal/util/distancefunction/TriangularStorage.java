@@ -0,0 +1,467 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import net.sf.jclal.util.matrixFile.Matrix;
+
+/**
+ * Storage of the upper triangle, without the diagonal, of a symmetric matrix
+ * of size x size. The row r has the size - r - 1 values of the columns r + 1,
+ * ..., size - 1, and the value of the column j is stored in the position
+ * j - r - 1 of the row.
+ *
+ * The packed storages keep the rows one after the other in a single address
+ * space, split in segments of primitive arrays, so there is not an array per
+ * row and the number of values is not limited to the maximum size of an
+ * array. The values can be stored in double or in single precision, which
+ * halves the memory. The packed rows can also be mapped from a file, which
+ * allows to share the values among several processes.
+ *
+ * A view shows a sub-matrix of other storage, given by a mapping of its
+ * rows, or the values of other storage scaled to a range. The views can not
+ * be modified.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public abstract class TriangularStorage {
+
+	/**
+	 * The number of bits of the position in a segment.
+	 */
+	private static final int SEGMENT_BITS = 26;
+
+	/**
+	 * The number of values of a segment.
+	 */
+	private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+	/**
+	 * The mask of the position in a segment.
+	 */
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * The size of the matrix.
+	 */
+	protected final int size;
+
+	/**
+	 * Constructor
+	 *
+	 * @param size
+	 *            The size of the matrix
+	 */
+	protected TriangularStorage(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Creates a packed storage in main memory.
+	 *
+	 * @param size
+	 *            The size of the matrix
+	 * @param singlePrecision
+	 *            Whether the values are stored as float
+	 * @return The storage
+	 */
+	public static TriangularStorage packed(int size, boolean singlePrecision) {
+		if (singlePrecision) {
+			return new PackedFloat(size);
+		}
+		return new PackedDouble(size);
+	}
+
+	/**
+	 * Creates a storage over a file.
+	 *
+	 * @param size
+	 *            The size of the matrix
+	 * @return The storage
+	 * @throws Exception
+	 *             If the file can not be created
+	 */
+	public static TriangularStorage overFile(int size) throws Exception {
+		return new OverFile(size);
+	}
+
+	/**
+	 * Maps a packed storage in double precision from a file. The values are
+	 * stored one after the other from the given offset, the file must be
+	 * large enough.
+	 *
+	 * @param file
+	 *            The file
+	 * @param offset
+	 *            The position in bytes of the first value
+	 * @param size
+	 *            The size of the matrix
+	 * @param readOnly
+	 *            Whether the storage can not be modified
+	 * @return The storage
+	 * @throws IOException
+	 *             If the file can not be mapped
+	 */
+	public static TriangularStorage mapped(File file, long offset, int size, boolean readOnly) throws IOException {
+		return new MappedFile(file, offset, size, readOnly);
+	}
+
+	/**
+	 * Creates a view of the sub-matrix given by a mapping of the rows of other
+	 * storage. The value between the rows r1 and r2 of the view is the value
+	 * between the rows rows[r1] and rows[r2] of the storage, and 0 if they are
+	 * the same row. The view owns the storage, it is destroyed with the view.
+	 *
+	 * @param source
+	 *            The storage
+	 * @param rows
+	 *            The row of the storage of each row of the view
+	 * @return The view
+	 */
+	public static TriangularStorage view(TriangularStorage source, int[] rows) {
+		return new SubMatrix(source, rows);
+	}
+
+	/**
+	 * Creates a view of the values of other storage scaled to a range, the
+	 * value v of the storage is seen as (v - min) / range. The view owns the
+	 * storage, it is destroyed with the view.
+	 *
+	 * @param source
+	 *            The storage
+	 * @param min
+	 *            The value subtracted
+	 * @param range
+	 *            The divisor
+	 * @return The view
+	 */
+	public static TriangularStorage scaled(TriangularStorage source, double min, double range) {
+		return new Scaled(source, min, range);
+	}
+
+	/**
+	 * Get the size of the matrix.
+	 *
+	 * @return The size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the number of values of the triangle.
+	 *
+	 * @return The number of values
+	 */
+	public long length() {
+		return (long) size * (size - 1) / 2;
+	}
+
+	/**
+	 * The position of a value in the packed address space.
+	 *
+	 * @param row
+	 *            The row
+	 * @param column
+	 *            The position in the row
+	 * @return The position
+	 */
+	protected final long position(int row, int column) {
+		return (long) row * (2L * size - row - 1) / 2 + column;
+	}
+
+	/**
+	 * Get a value
+	 *
+	 * @param row
+	 *            The row
+	 * @param column
+	 *            The position in the row
+	 * @return The value
+	 */
+	public abstract double get(int row, int column);
+
+	/**
+	 * Set a value
+	 *
+	 * @param row
+	 *            The row
+	 * @param column
+	 *            The position in the row
+	 * @param value
+	 *            The value
+	 */
+	public abstract void set(int row, int column, double value);
+
+	/**
+	 * Free the resources of the storage
+	 */
+	public void destroy() {
+	}
+
+	/**
+	 * The number of segments of a packed storage.
+	 */
+	private static int segments(long length) {
+		return (int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+	}
+
+	/**
+	 * The number of values of a segment of a packed storage.
+	 */
+	private static int segmentLength(long length, int segment) {
+		return (int) Math.min(SEGMENT_SIZE, length - ((long) segment << SEGMENT_BITS));
+	}
+
+	/**
+	 * Packed storage in double precision.
+	 */
+	private static final class PackedDouble extends TriangularStorage {
+
+		private final double[][] values;
+
+		private PackedDouble(int size) {
+			super(size);
+
+			long length = length();
+
+			values = new double[segments(length)][];
+
+			for (int s = 0; s < values.length; s++) {
+				values[s] = new double[segmentLength(length, s)];
+			}
+		}
+
+		@Override
+		public double get(int row, int column) {
+			long p = position(row, column);
+			return values[(int) (p >>> SEGMENT_BITS)][(int) (p & SEGMENT_MASK)];
+		}
+
+		@Override
+		public void set(int row, int column, double value) {
+			long p = position(row, column);
+			values[(int) (p >>> SEGMENT_BITS)][(int) (p & SEGMENT_MASK)] = value;
+		}
+	}
+
+	/**
+	 * Packed storage in single precision.
+	 */
+	private static final class PackedFloat extends TriangularStorage {
+
+		private final float[][] values;
+
+		private PackedFloat(int size) {
+			super(size);
+
+			long length = length();
+
+			values = new float[segments(length)][];
+
+			for (int s = 0; s < values.length; s++) {
+				values[s] = new float[segmentLength(length, s)];
+			}
+		}
+
+		@Override
+		public double get(int row, int column) {
+			long p = position(row, column);
+			return values[(int) (p >>> SEGMENT_BITS)][(int) (p & SEGMENT_MASK)];
+		}
+
+		@Override
+		public void set(int row, int column, double value) {
+			long p = position(row, column);
+			values[(int) (p >>> SEGMENT_BITS)][(int) (p & SEGMENT_MASK)] = (float) value;
+		}
+	}
+
+	/**
+	 * Packed storage in double precision mapped from a file.
+	 */
+	private static final class MappedFile extends TriangularStorage {
+
+		private MappedByteBuffer[] buffers;
+
+		private DoubleBuffer[] values;
+
+		private MappedFile(File file, long offset, int size, boolean readOnly) throws IOException {
+			super(size);
+
+			long length = length();
+
+			buffers = new MappedByteBuffer[segments(length)];
+			values = new DoubleBuffer[buffers.length];
+
+			FileChannel channel = readOnly ? FileChannel.open(file.toPath(), StandardOpenOption.READ)
+					: FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+			try {
+				for (int s = 0; s < buffers.length; s++) {
+
+					// The mappings stay valid when the channel is closed
+					buffers[s] = channel.map(readOnly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE,
+							offset + ((long) s << SEGMENT_BITS) * 8, (long) segmentLength(length, s) * 8);
+					values[s] = buffers[s].asDoubleBuffer();
+				}
+			} finally {
+				channel.close();
+			}
+		}
+
+		@Override
+		public double get(int row, int column) {
+			long p = position(row, column);
+			return values[(int) (p >>> SEGMENT_BITS)].get((int) (p & SEGMENT_MASK));
+		}
+
+		@Override
+		public void set(int row, int column, double value) {
+			long p = position(row, column);
+			values[(int) (p >>> SEGMENT_BITS)].put((int) (p & SEGMENT_MASK), value);
+		}
+
+		/**
+		 * Writes the modified values to the file and releases the mappings.
+		 */
+		@Override
+		public void destroy() {
+
+			if (buffers == null) {
+				return;
+			}
+
+			for (MappedByteBuffer buffer : buffers) {
+				if (!buffer.isReadOnly()) {
+					buffer.force();
+				}
+			}
+
+			buffers = null;
+			values = null;
+		}
+	}
+
+	/**
+	 * Sub-matrix of other storage.
+	 */
+	private static final class SubMatrix extends TriangularStorage {
+
+		private final TriangularStorage source;
+
+		private final int[] rows;
+
+		private SubMatrix(TriangularStorage source, int[] rows) {
+			super(rows.length);
+			this.source = source;
+			this.rows = rows;
+		}
+
+		@Override
+		public double get(int row, int column) {
+
+			int first = rows[row];
+			int second = rows[row + column + 1];
+
+			if (first == second) {
+				return 0;
+			}
+
+			int r = Math.min(first, second);
+
+			return source.get(r, Math.max(first, second) - r - 1);
+		}
+
+		@Override
+		public void set(int row, int column, double value) {
+			throw new UnsupportedOperationException("A sub-matrix can not be modified");
+		}
+
+		@Override
+		public void destroy() {
+			source.destroy();
+		}
+	}
+
+	/**
+	 * Values of other storage scaled to a range.
+	 */
+	private static final class Scaled extends TriangularStorage {
+
+		private final TriangularStorage source;
+
+		private final double min;
+
+		private final double range;
+
+		private Scaled(TriangularStorage source, double min, double range) {
+			super(source.size);
+			this.source = source;
+			this.min = min;
+			this.range = range;
+		}
+
+		@Override
+		public double get(int row, int column) {
+			return (source.get(row, column) - min) / range;
+		}
+
+		@Override
+		public void set(int row, int column, double value) {
+			throw new UnsupportedOperationException("A scaled storage can not be modified");
+		}
+
+		@Override
+		public void destroy() {
+			source.destroy();
+		}
+	}
+
+	/**
+	 * Storage over a file, the values are stored in a size x size matrix.
+	 */
+	private static final class OverFile extends TriangularStorage {
+
+		private final Matrix matrix;
+
+		private OverFile(int size) throws Exception {
+			super(size);
+			matrix = new Matrix(size, size, true);
+		}
+
+		@Override
+		public double get(int row, int column) {
+			return matrix.get(row, column);
+		}
+
+		@Override
+		public void set(int row, int column, double value) {
+			matrix.set(row, column, value);
+		}
+
+		@Override
+		public void destroy() {
+			matrix.destroy();
+		}
+	}
+}
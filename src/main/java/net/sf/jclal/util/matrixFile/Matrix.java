@@ -19,17 +19,18 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
 import weka.core.matrix.Maths;
 
 /**
@@ -56,9 +57,37 @@ public class Matrix {
 	/**
 	 * Access to the matrix
 	 */
-	private SeekableByteChannel fileAccessN;
-	private ByteBuffer buff;
-	private DoubleBuffer doubleB;
+	private FileChannel fileAccessN;
+	/**
+	 * The memory-mapped segments of the matrix file. The element e of the
+	 * matrix, counting by rows, is in the position e &amp; SEGMENT_MASK of the
+	 * segment e &gt;&gt;&gt; SEGMENT_BITS. The segments are only read and written
+	 * with absolute positions, so different elements can be accessed from
+	 * several threads.
+	 */
+	private DoubleBuffer[] segments;
+
+	/**
+	 * The number of bits of the position in a segment, a segment maps 1 GB of
+	 * the file.
+	 */
+	private static final int SEGMENT_BITS = 27;
+
+	/**
+	 * The number of elements of a segment.
+	 */
+	private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+	/**
+	 * The mask of the position in a segment.
+	 */
+	private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+	/**
+	 * The size of the square tiles used by the operations that traverse the
+	 * matrix by blocks.
+	 */
+	private static final int TILE = 128;
 
 	/**
 	 * The array that stores the matrix over the main memory, it is null if the
@@ -86,6 +115,18 @@ public class Matrix {
 	 */
 	private boolean overFile = false;
 
+	/**
+	 * Whether the arithmetic operations are parallelized, the matrices
+	 * returned by the operations inherit this value
+	 */
+	private boolean parallel = false;
+
+	/**
+	 * The minimum number of elements processed by an operation to run it in
+	 * parallel.
+	 */
+	private static final long PARALLEL_WORK = 1L << 16;
+
 	/**
 	 * The default value of the matrix is 0. The user does not have to worry
 	 * about establishing the path of the matrix file, a temporal file is
@@ -356,16 +397,27 @@ public class Matrix {
 
 				RandomAccessFile fileAccess = new RandomAccessFile(matrixFile, "rw");
 
-				long length = m * n * getBytesElements();
+				// the number of elements can exceed the range of int
+				long elements = m * n;
+
+				long length = elements * getBytesElements();
 
 				fileAccess.setLength(length);
 				fileAccess.close();
 
 				Path p = FileSystems.getDefault().getPath(matrixFile.getAbsolutePath());
-				fileAccessN = Files.newByteChannel(p, StandardOpenOption.WRITE, StandardOpenOption.READ);
+				fileAccessN = FileChannel.open(p, StandardOpenOption.WRITE, StandardOpenOption.READ);
+
+				segments = new DoubleBuffer[(int) ((elements + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
 
-				buff = ByteBuffer.allocateDirect(getBytesElements());
-				doubleB = buff.asDoubleBuffer();
+				for (int s = 0; s < segments.length; s++) {
+
+					long first = (long) s << SEGMENT_BITS;
+					long count = Math.min(SEGMENT_SIZE, elements - first);
+
+					segments[s] = fileAccessN.map(FileChannel.MapMode.READ_WRITE, first * getBytesElements(),
+							count * getBytesElements()).asDoubleBuffer();
+				}
 
 			} catch (IOException ex) {
 				Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -383,8 +435,16 @@ public class Matrix {
 
 		if (fileAccessN != null) {
 
+			// The mappings are released when the segments are collected, if the
+			// file can not be deleted yet it is deleted on exit
+			segments = null;
+
 			fileAccessN.close();
-			matrixFile.delete();
+			fileAccessN = null;
+
+			if (!matrixFile.delete()) {
+				matrixFile.deleteOnExit();
+			}
 		}
 	}
 
@@ -485,10 +545,11 @@ public class Matrix {
 
 			x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
 
+			double[] row = new double[getColumnDimension()];
+
 			for (int i = 0; i < getRowDimension(); i++) {
-				for (int j = 0; j < getColumnDimension(); j++) {
-					x.set(i, j, get(i, j));
-				}
+				getRow(i, row);
+				x.setRow(i, row);
 			}
 
 		} catch (Exception ex) {
@@ -508,6 +569,23 @@ public class Matrix {
 		return this.copy();
 	}
 
+	/**
+	 * The length of a one-dimensional copy of the matrix.
+	 *
+	 * @return The number of elements.
+	 */
+	private int packedLength() {
+
+		long elements = (long) getRowDimension() * getColumnDimension();
+
+		if (elements > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The matrix has " + elements
+					+ " elements, it can not be copied in an array");
+		}
+
+		return (int) elements;
+	}
+
 	/**
 	 * Make a one-dimensional column copy of the internal array.
 	 *
@@ -515,7 +593,7 @@ public class Matrix {
 	 */
 	public double[] getColumnPackedCopy() {
 
-		double[] vals = new double[getRowDimension() * getColumnDimension()];
+		double[] vals = new double[packedLength()];
 
 		for (int i = 0; i < getRowDimension(); i++) {
 			for (int j = 0; j < getColumnDimension(); j++) {
@@ -532,12 +610,10 @@ public class Matrix {
 	 * @return Matrix elements in a one-dimensional array by rows.
 	 */
 	public double[] getRowPackedCopy() {
-		double[] vals = new double[getRowDimension() * getColumnDimension()];
+		double[] vals = new double[packedLength()];
 
 		for (int i = 0; i < getRowDimension(); i++) {
-			for (int j = 0; j < getColumnDimension(); j++) {
-				vals[i * getColumnDimension() + j] = get(i, j);
-			}
+			readRange(i, 0, vals, i * getColumnDimension(), getColumnDimension());
 		}
 		return vals;
 	}
@@ -586,14 +662,8 @@ public class Matrix {
 	 *             The exception to launch
 	 */
 	public double readValue(int i, int j) throws IOException {
-		fileAccessN.position(pos(i, j));
-
-		buff.clear();
-		doubleB.clear();
-
-		fileAccessN.read(buff);
-
-		return doubleB.get();
+		long e = element(i, j);
+		return segments[(int) (e >>> SEGMENT_BITS)].get((int) (e & SEGMENT_MASK));
 	}
 
 	/**
@@ -643,14 +713,163 @@ public class Matrix {
 	 *             The exception to launch
 	 */
 	public void writeValue(int i, int j, double s) throws IOException {
-		fileAccessN.position(pos(i, j));
+		long e = element(i, j);
+		segments[(int) (e >>> SEGMENT_BITS)].put((int) (e & SEGMENT_MASK), s);
+	}
 
-		buff.clear();
-		doubleB.clear();
+	/**
+	 * Get a row of the matrix.
+	 *
+	 * @param i
+	 *            The row
+	 * @return A(i,:)
+	 */
+	public double[] getRow(int i) {
+		double[] row = new double[getColumnDimension()];
+		getRow(i, row);
+		return row;
+	}
 
-		doubleB.put(s);
+	/**
+	 * Copy a row of the matrix in an array.
+	 *
+	 * @param i
+	 *            The row
+	 * @param row
+	 *            The array where A(i,:) is copied, its length must be at least
+	 *            the number of columns
+	 */
+	public void getRow(int i, double[] row) {
+		readRange(i, 0, row, 0, getColumnDimension());
+	}
 
-		fileAccessN.write(buff);
+	/**
+	 * Set a row of the matrix.
+	 *
+	 * @param i
+	 *            The row
+	 * @param row
+	 *            The values of A(i,:), its length must be at least the number
+	 *            of columns
+	 */
+	public void setRow(int i, double[] row) {
+		writeRange(i, 0, row, 0, getColumnDimension());
+	}
+
+	/**
+	 * Copy a block of the matrix in an array.
+	 *
+	 * @param i0
+	 *            Initial row index
+	 * @param j0
+	 *            Initial column index
+	 * @param rows
+	 *            The number of rows of the block
+	 * @param columns
+	 *            The number of columns of the block
+	 * @param block
+	 *            The array where A(i0:i0+rows-1,j0:j0+columns-1) is copied
+	 */
+	public void getBlock(int i0, int j0, int rows, int columns, double[][] block) {
+		for (int r = 0; r < rows; r++) {
+			readRange(i0 + r, j0, block[r], 0, columns);
+		}
+	}
+
+	/**
+	 * Set a block of the matrix.
+	 *
+	 * @param i0
+	 *            Initial row index
+	 * @param j0
+	 *            Initial column index
+	 * @param rows
+	 *            The number of rows of the block
+	 * @param columns
+	 *            The number of columns of the block
+	 * @param block
+	 *            The values of A(i0:i0+rows-1,j0:j0+columns-1)
+	 */
+	public void setBlock(int i0, int j0, int rows, int columns, double[][] block) {
+		for (int r = 0; r < rows; r++) {
+			writeRange(i0 + r, j0, block[r], 0, columns);
+		}
+	}
+
+	/**
+	 * Copy consecutive elements of a row in an array.
+	 *
+	 * @param i
+	 *            The row
+	 * @param j
+	 *            The first column
+	 * @param values
+	 *            The array
+	 * @param offset
+	 *            The first position of the array
+	 * @param length
+	 *            The number of elements
+	 */
+	private void readRange(int i, int j, double[] values, int offset, int length) {
+
+		if (!overFile) {
+			System.arraycopy(A[i], j, values, offset, length);
+			return;
+		}
+
+		long e = element(i, j);
+
+		while (length > 0) {
+
+			DoubleBuffer segment = segments[(int) (e >>> SEGMENT_BITS)].duplicate();
+			segment.position((int) (e & SEGMENT_MASK));
+
+			int count = Math.min(length, segment.remaining());
+
+			segment.get(values, offset, count);
+
+			e += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	/**
+	 * Write consecutive elements of a row from an array.
+	 *
+	 * @param i
+	 *            The row
+	 * @param j
+	 *            The first column
+	 * @param values
+	 *            The array
+	 * @param offset
+	 *            The first position of the array
+	 * @param length
+	 *            The number of elements
+	 */
+	private void writeRange(int i, int j, double[] values, int offset, int length) {
+
+		if (!overFile) {
+			System.arraycopy(values, offset, A[i], j, length);
+			return;
+		}
+
+		long e = element(i, j);
+
+		while (length > 0) {
+
+			DoubleBuffer segment = segments[(int) (e >>> SEGMENT_BITS)].duplicate();
+			segment.position((int) (e & SEGMENT_MASK));
+
+			int count = Math.min(length, segment.remaining());
+
+			segment.put(values, offset, count);
+
+			e += count;
+			offset += count;
+			length -= count;
+		}
 	}
 
 	/**
@@ -677,10 +896,16 @@ public class Matrix {
 			x = new Matrix(i1 - i0 + 1, j1 - j0 + 1, overFile);
 
 			try {
+
+				if (i0 < 0 || i1 >= getRowDimension() || j0 < 0 || j1 >= getColumnDimension()) {
+					throw new ArrayIndexOutOfBoundsException();
+				}
+
+				double[] row = new double[j1 - j0 + 1];
+
 				for (int i = i0; i <= i1; i++) {
-					for (int j = j0; j <= j1; j++) {
-						x.set(i - i0, j - j0, get(i, j));
-					}
+					readRange(i, j0, row, 0, row.length);
+					x.setRow(i - i0, row);
 				}
 			} catch (ArrayIndexOutOfBoundsException e) {
 				throw new ArrayIndexOutOfBoundsException("Submatrix indices");
@@ -948,14 +1173,65 @@ public class Matrix {
 
 		try {
 
-			x = new Matrix(getColumnDimension(), getRowDimension(), overFile);
+			x = newMatrix(getColumnDimension(), getRowDimension());
 
-			for (int i = 0; i < getRowDimension(); i++) {
-				for (int j = 0; j < getColumnDimension(); j++) {
+			final Matrix t = x;
 
-					x.set(j, i, get(i, j));
-				}
-			}
+			final int rows = getRowDimension();
+			final int columns = getColumnDimension();
+
+			final boolean inMemory = !overFile;
+
+			// Each chunk writes the rows of the transpose of a block of columns
+			ParallelControl.forRange(0, (columns + TILE - 1) / TILE, 1, isParallel((long) rows * columns),
+					new RangeTask() {
+						@Override
+						public void compute(int begin, int end) {
+
+							double[][] tile = null;
+							double[][] transposed = null;
+
+							if (!inMemory) {
+								tile = new double[TILE][TILE];
+								transposed = new double[TILE][TILE];
+							}
+
+							for (int jt = begin; jt < end; jt++) {
+
+								int j0 = jt * TILE;
+								int width = Math.min(TILE, columns - j0);
+
+								for (int i0 = 0; i0 < rows; i0 += TILE) {
+
+									int height = Math.min(TILE, rows - i0);
+
+									if (inMemory) {
+
+										for (int i = i0; i < i0 + height; i++) {
+
+											double[] row = A[i];
+
+											for (int j = j0; j < j0 + width; j++) {
+												t.A[j][i] = row[j];
+											}
+										}
+
+									} else {
+
+										getBlock(i0, j0, height, width, tile);
+
+										for (int i = 0; i < height; i++) {
+											for (int j = 0; j < width; j++) {
+												transposed[j][i] = tile[i][j];
+											}
+										}
+
+										t.setBlock(j0, i0, width, height, transposed);
+									}
+								}
+							}
+						}
+					});
 
 		} catch (Exception ex) {
 			Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -971,18 +1247,62 @@ public class Matrix {
 	 */
 	public double norm1() {
 
-		double f = 0;
+		final int rows = getRowDimension();
+		final int columns = getColumnDimension();
 
-		for (int j = 0; j < getColumnDimension(); j++) {
+		int tiles = (columns + TILE - 1) / TILE;
 
-			double s = 0;
+		final double[] maxima = new double[tiles];
 
-			for (int i = 0; i < getRowDimension(); i++) {
+		// Each column is summed in the order of the rows
+		ParallelControl.forRange(0, tiles, 1, isParallel((long) rows * columns), new RangeTask() {
+			@Override
+			public void compute(int begin, int end) {
 
-				s += Math.abs(get(i, j));
+				double[] sums = new double[TILE];
+				double[] row = overFile ? new double[TILE] : null;
+
+				for (int t = begin; t < end; t++) {
+
+					int j0 = t * TILE;
+					int width = Math.min(TILE, columns - j0);
+
+					Arrays.fill(sums, 0);
+
+					for (int i = 0; i < rows; i++) {
+
+						double[] values;
+						int offset;
+
+						if (overFile) {
+							readRange(i, j0, row, 0, width);
+							values = row;
+							offset = 0;
+						} else {
+							values = A[i];
+							offset = j0;
+						}
+
+						for (int j = 0; j < width; j++) {
+							sums[j] += Math.abs(values[offset + j]);
+						}
+					}
+
+					double f = 0;
+
+					for (int j = 0; j < width; j++) {
+						f = Math.max(f, sums[j]);
+					}
+
+					maxima[t] = f;
+				}
 			}
+		});
 
-			f = Math.max(f, s);
+		double f = 0;
+
+		for (double max : maxima) {
+			f = Math.max(f, max);
 		}
 
 		return f;
@@ -1011,12 +1331,52 @@ public class Matrix {
 	 * @return sqrt of sum of squares of all elements.
 	 */
 	public double normF() {
-		double f = 0;
-		for (int i = 0; i < getRowDimension(); i++) {
-			for (int j = 0; j < getColumnDimension(); j++) {
-				f = Maths.hypot(f, get(i, j));
+
+		final int rows = getRowDimension();
+		final int columns = getColumnDimension();
+
+		int tiles = (rows + TILE - 1) / TILE;
+
+		final double[] partial = new double[tiles];
+
+		// The blocks of rows are fixed, so the result does not depend on the
+		// number of threads
+		ParallelControl.forRange(0, tiles, 1, isParallel((long) rows * columns), new RangeTask() {
+			@Override
+			public void compute(int begin, int end) {
+
+				double[] row = overFile ? new double[columns] : null;
+
+				for (int t = begin; t < end; t++) {
+
+					double f = 0;
+
+					for (int i = t * TILE; i < Math.min(rows, (t + 1) * TILE); i++) {
+
+						double[] values = row;
+
+						if (overFile) {
+							getRow(i, row);
+						} else {
+							values = A[i];
+						}
+
+						for (int j = 0; j < columns; j++) {
+							f = Maths.hypot(f, values[j]);
+						}
+					}
+
+					partial[t] = f;
+				}
 			}
+		});
+
+		double f = 0;
+
+		for (double value : partial) {
+			f = Maths.hypot(f, value);
 		}
+
 		return f;
 	}
 
@@ -1072,13 +1432,7 @@ public class Matrix {
 		try {
 			checkMatrixDimensions(B);
 
-			x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
-
-			for (int i = 0; i < getRowDimension(); i++) {
-				for (int j = 0; j < getColumnDimension(); j++) {
-					x.set(i, j, get(i, j) + B.get(i, j));
-				}
-			}
+			x = elementWise(B, false);
 
 		} catch (Exception ex) {
 			Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -1170,14 +1524,7 @@ public class Matrix {
 		try {
 			checkMatrixDimensions(B);
 
-			x = new Matrix(getRowDimension(), getColumnDimension(), overFile);
-
-			for (int i = 0; i < getRowDimension(); i++) {
-				for (int j = 0; j < getColumnDimension(); j++) {
-
-					x.set(i, j, get(i, j) * B.get(i, j));
-				}
-			}
+			x = elementWise(B, true);
 
 		} catch (Exception ex) {
 			Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
@@ -1186,6 +1533,73 @@ public class Matrix {
 		return x;
 	}
 
+	/**
+	 * Element-by-element sum or multiplication by parallel blocks of rows. The
+	 * matrices in main memory are accessed directly, the rest are read and
+	 * written by rows.
+	 *
+	 * @param B
+	 *            another matrix with the same dimensions
+	 * @param product
+	 *            Whether the elements are multiplied instead of summed
+	 * @return A.*B or A + B
+	 * @throws Exception
+	 *             If the new matrix can not be created
+	 */
+	private Matrix elementWise(final Matrix B, final boolean product) throws Exception {
+
+		final Matrix x = newMatrix(getRowDimension(), getColumnDimension());
+
+		final int columns = getColumnDimension();
+
+		final boolean inMemory = !overFile && !B.overFile;
+
+		ParallelControl.forRange(0, getRowDimension(), isParallel((long) getRowDimension() * columns),
+				new RangeTask() {
+					@Override
+					public void compute(int begin, int end) {
+
+						double[] rowA = null;
+						double[] rowB = null;
+						double[] rowX = null;
+
+						if (!inMemory) {
+							rowA = new double[columns];
+							rowB = new double[columns];
+							rowX = new double[columns];
+						}
+
+						for (int i = begin; i < end; i++) {
+
+							if (inMemory) {
+								rowA = A[i];
+								rowB = B.A[i];
+								rowX = x.A[i];
+							} else {
+								getRow(i, rowA);
+								B.getRow(i, rowB);
+							}
+
+							if (product) {
+								for (int j = 0; j < columns; j++) {
+									rowX[j] = rowA[j] * rowB[j];
+								}
+							} else {
+								for (int j = 0; j < columns; j++) {
+									rowX[j] = rowA[j] + rowB[j];
+								}
+							}
+
+							if (!inMemory) {
+								x.setRow(i, rowX);
+							}
+						}
+					}
+				});
+
+		return x;
+	}
+
 	/**
 	 * Element-by-element multiplication in place, A = A.*B
 	 *
@@ -1374,35 +1788,146 @@ public class Matrix {
 				throw new IllegalArgumentException("Matrix inner dimensions must agree.");
 			}
 
-			x = new Matrix(getRowDimension(), B.getColumnDimension(), overFile);
+			x = newMatrix(getRowDimension(), B.getColumnDimension());
 
-			double[] Bcolj = new double[getColumnDimension()];
+			if (!overFile && !B.overFile) {
+				timesInMemory(B, x);
+			} else {
+				timesByTiles(B, x);
+			}
 
-			for (int j = 0; j < B.getColumnDimension(); j++) {
+		} catch (Exception ex) {
+			Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
+		}
 
-				for (int k = 0; k < getColumnDimension(); k++) {
+		return x;
+	}
 
-					Bcolj[k] = B.get(k, j);
-				}
+	/**
+	 * Matrix multiplication of matrices in main memory by parallel blocks of
+	 * rows. Each element of the product accumulates the terms in the order of
+	 * k, as the product by columns.
+	 *
+	 * @param B
+	 *            another matrix in main memory
+	 * @param x
+	 *            The matrix where the product is stored, initially zero
+	 */
+	private void timesInMemory(final Matrix B, final Matrix x) {
+
+		final int rows = getRowDimension();
+		final int inner = getColumnDimension();
+		final int columns = B.getColumnDimension();
+
+		ParallelControl.forRange(0, (rows + TILE - 1) / TILE, 1, isParallel((long) rows * inner * columns),
+				new RangeTask() {
+					@Override
+					public void compute(int begin, int end) {
+
+						for (int it = begin; it < end; it++) {
+
+							int i0 = it * TILE;
+							int i1 = Math.min(rows, i0 + TILE);
+
+							for (int j0 = 0; j0 < columns; j0 += TILE) {
+
+								int j1 = Math.min(columns, j0 + TILE);
 
-				for (int i = 0; i < getRowDimension(); i++) {
+								for (int k0 = 0; k0 < inner; k0 += TILE) {
 
-					double s = 0;
+									int k1 = Math.min(inner, k0 + TILE);
 
-					for (int k = 0; k < n; k++) {
+									for (int i = i0; i < i1; i++) {
 
-						s += get(i, k) * Bcolj[k];
+										double[] rowA = A[i];
+										double[] rowX = x.A[i];
+
+										for (int k = k0; k < k1; k++) {
+
+											double a = rowA[k];
+											double[] rowB = B.A[k];
+
+											for (int j = j0; j < j1; j++) {
+												rowX[j] += a * rowB[j];
+											}
+										}
+									}
+								}
+							}
+						}
 					}
+				});
+	}
 
-					x.set(i, j, s);
-				}
-			}
+	/**
+	 * Matrix multiplication by tiles read and written with the block
+	 * accessors, used when some matrix is stored over a file. The blocks of
+	 * rows of the product are computed in parallel. Each element of the
+	 * product accumulates the terms in the order of k, as the product by
+	 * columns.
+	 *
+	 * @param B
+	 *            another matrix
+	 * @param x
+	 *            The matrix where the product is stored
+	 */
+	private void timesByTiles(final Matrix B, final Matrix x) {
 
-		} catch (Exception ex) {
-			Logger.getLogger(Matrix.class.getName()).log(Level.SEVERE, null, ex);
-		}
+		final int rows = getRowDimension();
+		final int inner = getColumnDimension();
+		final int columns = B.getColumnDimension();
 
-		return x;
+		ParallelControl.forRange(0, (rows + TILE - 1) / TILE, 1, isParallel((long) rows * inner * columns),
+				new RangeTask() {
+					@Override
+					public void compute(int begin, int end) {
+
+						double[][] tileA = new double[TILE][TILE];
+						double[][] tileB = new double[TILE][TILE];
+						double[][] tileX = new double[TILE][TILE];
+
+						for (int it = begin; it < end; it++) {
+
+							int i0 = it * TILE;
+							int height = Math.min(TILE, rows - i0);
+
+							for (int j0 = 0; j0 < columns; j0 += TILE) {
+
+								int width = Math.min(TILE, columns - j0);
+
+								for (int i = 0; i < height; i++) {
+									Arrays.fill(tileX[i], 0, width, 0);
+								}
+
+								for (int k0 = 0; k0 < inner; k0 += TILE) {
+
+									int depth = Math.min(TILE, inner - k0);
+
+									getBlock(i0, k0, height, depth, tileA);
+									B.getBlock(k0, j0, depth, width, tileB);
+
+									for (int i = 0; i < height; i++) {
+
+										double[] rowA = tileA[i];
+										double[] rowX = tileX[i];
+
+										for (int k = 0; k < depth; k++) {
+
+											double a = rowA[k];
+											double[] rowB = tileB[k];
+
+											for (int j = 0; j < width; j++) {
+												rowX[j] += a * rowB[j];
+											}
+										}
+									}
+								}
+
+								x.setBlock(i0, j0, height, width, tileX);
+							}
+						}
+					}
+				});
 	}
 
 	/**
@@ -1572,7 +2097,20 @@ public class Matrix {
 	 * @return The position where the value is in the file.
 	 */
 	public long pos(int row, int column) {
-		return (row * this.n + column) * getBytesElements();
+		return element(row, column) * getBytesElements();
+	}
+
+	/**
+	 * The position of an element counting by rows.
+	 *
+	 * @param row
+	 *            The row
+	 * @param column
+	 *            The column
+	 * @return The position of the element.
+	 */
+	private long element(int row, int column) {
+		return (long) row * this.n + column;
 	}
 
 	/**
@@ -1596,4 +2134,54 @@ public class Matrix {
 	public void setOverFile(boolean overFile) {
 		this.overFile = overFile;
 	}
+
+	/**
+	 * Get if the arithmetic operations are parallelized.
+	 *
+	 * @return Whether the operations are parallelized.
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Set if the arithmetic operations will be parallelized. The matrices
+	 * returned by the operations inherit this value.
+	 *
+	 * @param parallel
+	 *            Whether the operations will be parallelized.
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	/**
+	 * Whether an operation that processes the given number of elements runs in
+	 * parallel.
+	 *
+	 * @param work
+	 *            The number of elements
+	 * @return true if the matrix is parallel and the work is large enough
+	 */
+	private boolean isParallel(long work) {
+		return parallel && work >= PARALLEL_WORK;
+	}
+
+	/**
+	 * Create a matrix for the result of an operation, with the same storage
+	 * and parallelism as this matrix.
+	 *
+	 * @param m
+	 *            The number of rows
+	 * @param n
+	 *            The number of columns
+	 * @return The new matrix
+	 * @throws Exception
+	 *             If the matrix file can not be created
+	 */
+	private Matrix newMatrix(int m, int n) throws Exception {
+		Matrix x = new Matrix(m, n, overFile);
+		x.parallel = parallel;
+		return x;
+	}
 }
\ No newline at end of file
@@ -16,6 +16,8 @@
 package net.sf.jclal.util.sort;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -83,6 +85,44 @@ public class IndexValueContainer {
 		--size;
 	}
 
+	/**
+	 * Delete the indexes of several instances, the remaining indexes keep
+	 * their order. The result is the same as deleting the positions one by one
+	 * from the biggest to the smallest, but the indexes are compacted in a
+	 * single pass.
+	 *
+	 * @param positions
+	 *            The current positions of the instances to delete
+	 */
+	public void deleteIndexes(int[] positions) {
+
+		if (positions.length == 0) {
+			return;
+		}
+
+		updateMaxAcumulativeValue = true;
+
+		boolean[] deleted = new boolean[size];
+
+		for (int pos : positions) {
+			deleted[pos] = true;
+		}
+
+		int newSize = 0;
+
+		for (int pos = 0; pos < size; ++pos) {
+			if (!deleted[pos]) {
+				indexesChanges[newSize++] = indexesChanges[pos];
+			}
+		}
+
+		for (int pos = newSize; pos < size; ++pos) {
+			indexesChanges[pos] = -1;
+		}
+
+		size = newSize;
+	}
+
 	/**
 	 * Get the actual pos.
 	 * 
@@ -144,6 +184,39 @@ public class IndexValueContainer {
 		return ordered;
 	}
 
+	/**
+	 * The indexes without repetitions in descendant order.
+	 *
+	 * @param removedIndexes
+	 *            The indexes of the removed instances.
+	 * @return An array with the indexes in order.
+	 */
+	protected int[] obtainOrderedIndexes(Collection<Integer> removedIndexes) {
+
+		int[] indexes = new int[removedIndexes.size()];
+
+		int n = 0;
+
+		for (int index : removedIndexes) {
+			indexes[n++] = index;
+		}
+
+		Arrays.sort(indexes);
+
+		// To order the array of bigger to smaller, without repetitions
+		int[] ordered = new int[indexes.length];
+
+		n = 0;
+
+		for (int i = indexes.length - 1; i >= 0; --i) {
+			if (n == 0 || ordered[n - 1] != indexes[i]) {
+				ordered[n++] = indexes[i];
+			}
+		}
+
+		return Arrays.copyOf(ordered, n);
+	}
+
 	/**
 	 * It stores a pair of values that represents the new index (key) with the
 	 * current index of the array, and the old index (value) of an instance with
@@ -17,6 +17,8 @@ package net.sf.jclal.util.sort;
 
 import java.util.Collections;
 import java.util.List;
+import net.sf.jclal.util.thread.ParallelControl;
+import net.sf.jclal.util.thread.RangeTask;
 
 /**
  * Utility class that implements a collection of ordering algorithms.
@@ -305,4 +307,168 @@ public class OrderUtils {
         } while (j != k);
     }
 
+    /**
+     * Select the positions of the k best values of an array. O(N log k).
+     *
+     * The values are not boxed neither sorted, a bounded heap with the k best
+     * positions found so far is maintained. Equal values are ordered by
+     * position, the lower position first, so the result is the same as taking
+     * the first k elements after a stable sort of the whole array. NaN values
+     * are considered better than any other value.
+     *
+     * @param values The values
+     * @param k The number of positions to select
+     * @param descendentOrder True if the best values are the greatest ones,
+     * false if they are the smallest ones
+     * @param isParallel True if the array can be split in chunks that are
+     * processed in parallel, the partial selections are merged afterwards
+     * @return The positions of the best values, ordered from the best to the
+     * worst. Its length is the minimum of k and the length of the array.
+     */
+    public static int[] selectBest(final double[] values, final int k, final boolean descendentOrder, boolean isParallel) {
+
+        final BoundedHeap selection = new BoundedHeap(values, k, descendentOrder);
+
+        if (k <= 0) {
+            return selection.toArray();
+        }
+
+        ParallelControl.forRange(0, values.length, isParallel, new RangeTask() {
+
+            @Override
+            public void compute(int begin, int end) {
+
+                BoundedHeap chunk = new BoundedHeap(values, k, descendentOrder);
+
+                for (int i = begin; i < end; i++) {
+                    chunk.offer(i);
+                }
+
+                synchronized (selection) {
+                    selection.merge(chunk);
+                }
+            }
+        });
+
+        return selection.toArray();
+    }
+
+    /**
+     * Heap of positions of an array whose root is the worst position kept.
+     */
+    private static class BoundedHeap {
+
+        private final double[] values;
+        private final boolean descendentOrder;
+        private final int[] heap;
+        private int size;
+
+        BoundedHeap(double[] values, int capacity, boolean descendentOrder) {
+            this.values = values;
+            this.descendentOrder = descendentOrder;
+            this.heap = new int[Math.max(0, Math.min(capacity, values.length))];
+        }
+
+        /**
+         * True if the value in position a must be selected before the value in
+         * position b.
+         */
+        boolean precedes(int a, int b) {
+
+            double va = values[a];
+            double vb = values[b];
+
+            if (va == vb) {
+                return a < b;
+            }
+
+            boolean nanA = Double.isNaN(va);
+            boolean nanB = Double.isNaN(vb);
+
+            if (nanA || nanB) {
+                return nanA && (!nanB || a < b);
+            }
+
+            return descendentOrder ? va > vb : va < vb;
+        }
+
+        void offer(int position) {
+
+            if (size < heap.length) {
+
+                // sift up
+                int i = size++;
+
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (!precedes(heap[parent], position)) {
+                        break;
+                    }
+                    heap[i] = heap[parent];
+                    i = parent;
+                }
+
+                heap[i] = position;
+
+            } else if (size > 0 && precedes(position, heap[0])) {
+                siftDown(position);
+            }
+        }
+
+        void merge(BoundedHeap other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.heap[i]);
+            }
+        }
+
+        private void siftDown(int position) {
+
+            int i = 0;
+
+            while (true) {
+
+                int child = 2 * i + 1;
+
+                if (child >= size) {
+                    break;
+                }
+
+                // the worst child
+                if (child + 1 < size && precedes(heap[child], heap[child + 1])) {
+                    child++;
+                }
+
+                if (!precedes(position, heap[child])) {
+                    break;
+                }
+
+                heap[i] = heap[child];
+                i = child;
+            }
+
+            heap[i] = position;
+        }
+
+        /**
+         * Empty the heap, the positions are returned from the best to the
+         * worst.
+         */
+        int[] toArray() {
+
+            int[] result = new int[size];
+
+            while (size > 0) {
+
+                result[size - 1] = heap[0];
+
+                int last = heap[--size];
+
+                if (size > 0) {
+                    siftDown(last);
+                }
+            }
+
+            return result;
+        }
+    }
 }
@@ -0,0 +1,302 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.thread;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide work-stealing scheduler shared by all the components of a run
+ * (query strategies, classifiers, distance containers...).
+ *
+ * The pool is created once and reused, instead of building a new thread pool
+ * in every call. The work is submitted as ranges of indexes (e.g. positions of
+ * the unlabeled pool) that are recursively split into chunks, so only a few
+ * tasks are created regardless of the number of instances.
+ *
+ * The number of threads is taken from the system property
+ * "cores-per-processor" (an integer or "all"), the same property used by
+ * RunExperiment. The parallel calls made from inside a chunk are nested
+ * calls; from the level given by the system property "parallel-nesting-level"
+ * (1 by default) on, they are executed sequentially by the calling thread.
+ */
+public final class ParallelControl {
+
+	/**
+	 * System property with the number of threads of the shared pool.
+	 */
+	public static final String CORES_PROPERTY = "cores-per-processor";
+
+	/**
+	 * System property with the maximum level of nested parallel calls.
+	 */
+	public static final String NESTING_PROPERTY = "parallel-nesting-level";
+
+	/**
+	 * Number of chunks per thread when the grain is not specified. A value
+	 * greater than 1 allows the work-stealing to balance uneven chunks.
+	 */
+	private static final int CHUNKS_PER_CORE = 4;
+
+	/**
+	 * The shared pool.
+	 */
+	private static ForkJoinPool pool;
+
+	/**
+	 * The value of the cores property used to build the current pool.
+	 */
+	private static String poolProperty;
+
+	/**
+	 * The nesting level of the chunk executed by the current thread.
+	 */
+	private static final ThreadLocal<int[]> NESTING = new ThreadLocal<int[]>() {
+		@Override
+		protected int[] initialValue() {
+			return new int[1];
+		}
+	};
+
+	private ParallelControl() {
+	}
+
+	/**
+	 * Get the shared pool. The pool is rebuilt if the cores property was
+	 * changed since the last call.
+	 *
+	 * @return The shared pool.
+	 */
+	public static synchronized ForkJoinPool getPool() {
+
+		String value = System.getProperty(CORES_PROPERTY);
+
+		if (pool == null || (value == null ? poolProperty != null : !value.equals(poolProperty))) {
+
+			if (pool != null) {
+				pool.shutdown();
+			}
+
+			pool = new ForkJoinPool(parseValue(CORES_PROPERTY, value));
+			poolProperty = value;
+		}
+
+		return pool;
+	}
+
+	/**
+	 * Set the number of threads of the shared pool.
+	 *
+	 * @param numberOfCores
+	 *            The number of threads to use.
+	 */
+	public static void setParallelism(int numberOfCores) {
+		System.setProperty(CORES_PROPERTY, String.valueOf(Math.max(1, numberOfCores)));
+	}
+
+	/**
+	 * Get the number of threads of the shared pool.
+	 *
+	 * @return The number of threads.
+	 */
+	public static int getParallelism() {
+		return getPool().getParallelism();
+	}
+
+	/**
+	 * Get the number of threads that a component will use.
+	 *
+	 * @param isParallelContext
+	 *            Whether the component is parallelized.
+	 * @return The number of threads of the shared pool if the context is
+	 *         parallel, 1 otherwise.
+	 */
+	public static int getCores(boolean isParallelContext) {
+		return isParallelContext ? getParallelism() : 1;
+	}
+
+	/**
+	 * Get the maximum level of nested parallel calls.
+	 *
+	 * @return The maximum nesting level.
+	 */
+	public static int getMaxNestingLevel() {
+		return Math.max(1, parseValue(NESTING_PROPERTY, System.getProperty(NESTING_PROPERTY)));
+	}
+
+	/**
+	 * Set the maximum level of nested parallel calls.
+	 *
+	 * @param maxNestingLevel
+	 *            The maximum nesting level, 1 means that only the outermost
+	 *            call is parallelized.
+	 */
+	public static void setMaxNestingLevel(int maxNestingLevel) {
+		System.setProperty(NESTING_PROPERTY, String.valueOf(Math.max(1, maxNestingLevel)));
+	}
+
+	/**
+	 * Execute the task over the range [begin, end). The size of the chunks is
+	 * chosen according to the number of threads.
+	 *
+	 * @param begin
+	 *            The first index, inclusive.
+	 * @param end
+	 *            The last index, exclusive.
+	 * @param isParallelContext
+	 *            Whether the range can be processed in parallel.
+	 * @param task
+	 *            The task to execute.
+	 */
+	public static void forRange(int begin, int end, boolean isParallelContext, RangeTask task) {
+		forRange(begin, end, 0, isParallelContext, task);
+	}
+
+	/**
+	 * Execute the task over the range [begin, end). The call returns when all
+	 * the chunks were processed. An exception thrown by a chunk is not
+	 * swallowed, it is thrown to the caller, and the chunks not started yet
+	 * may not be processed.
+	 *
+	 * @param begin
+	 *            The first index, inclusive.
+	 * @param end
+	 *            The last index, exclusive.
+	 * @param grain
+	 *            The maximum size of a chunk, if it is lower than 1 the size
+	 *            is chosen according to the number of threads.
+	 * @param isParallelContext
+	 *            Whether the range can be processed in parallel.
+	 * @param task
+	 *            The task to execute.
+	 */
+	public static void forRange(int begin, int end, int grain, boolean isParallelContext, RangeTask task) {
+
+		if (begin >= end) {
+			return;
+		}
+
+		int level = NESTING.get()[0];
+
+		ForkJoinPool current = isParallelContext ? getPool() : null;
+
+		if (current == null || current.getParallelism() == 1 || end - begin == 1 || level >= getMaxNestingLevel()) {
+			runChunk(task, begin, end, level);
+			return;
+		}
+
+		if (grain < 1) {
+			grain = Math.max(1, (end - begin) / (current.getParallelism() * CHUNKS_PER_CORE));
+		}
+
+		RangeAction action = new RangeAction(task, begin, end, grain, level + 1);
+
+		Thread thread = Thread.currentThread();
+
+		if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == current) {
+			action.invoke();
+		} else {
+			current.invoke(action);
+		}
+	}
+
+	/**
+	 * Execute a chunk in the current thread.
+	 */
+	private static void runChunk(RangeTask task, int begin, int end, int level) {
+
+		int[] nesting = NESTING.get();
+		int previous = nesting[0];
+		nesting[0] = level;
+
+		try {
+			task.compute(begin, end);
+		} finally {
+			nesting[0] = previous;
+		}
+	}
+
+	/**
+	 * Parse the value of a property.
+	 *
+	 * @param property
+	 *            The name of the property.
+	 * @param value
+	 *            An integer number or 'all' indicating employ all the cores.
+	 * @return The parsed value, 1 if the value is not valid.
+	 */
+	private static int parseValue(String property, String value) {
+
+		if (value == null || value.isEmpty()) {
+			return 1;
+		}
+
+		if (value.equalsIgnoreCase("all")) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+
+		try {
+			return Math.max(1, Integer.parseInt(value));
+		} catch (NumberFormatException ex) {
+			Logger.getLogger(ParallelControl.class.getName()).log(Level.WARNING,
+					"\nThe property << " + property + " >> " + "was not set correctly. "
+							+ "Default value of << 1 >> was assigned.\n",
+					ex);
+		}
+
+		return 1;
+	}
+
+	/**
+	 * Recursive split of a range until the chunks are not greater than the
+	 * grain.
+	 */
+	private static class RangeAction extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final RangeTask task;
+		private final int begin;
+		private final int end;
+		private final int grain;
+		private final int level;
+
+		RangeAction(RangeTask task, int begin, int end, int grain, int level) {
+			this.task = task;
+			this.begin = begin;
+			this.end = end;
+			this.grain = grain;
+			this.level = level;
+		}
+
+		@Override
+		protected void compute() {
+
+			if (end - begin <= grain) {
+				runChunk(task, begin, end, level);
+				return;
+			}
+
+			int middle = (begin + end) >>> 1;
+
+			invokeAll(new RangeAction(task, begin, middle, grain, level),
+					new RangeAction(task, middle, end, grain, level));
+		}
+	}
+}
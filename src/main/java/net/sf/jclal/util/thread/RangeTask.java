@@ -0,0 +1,37 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.thread;
+
+/**
+ * A unit of work over a contiguous range of indexes, e.g. a chunk of the
+ * unlabeled pool. It is executed by {@link ParallelControl}, which splits the
+ * whole range into chunks and calls {@link #compute(int, int)} once per chunk.
+ *
+ * Implementations must only write to positions inside the given range, so
+ * that different chunks can be processed at the same time.
+ */
+public abstract class RangeTask {
+
+	/**
+	 * Process the indexes of the chunk.
+	 *
+	 * @param begin
+	 *            The first index of the chunk, inclusive.
+	 * @param end
+	 *            The last index of the chunk, exclusive.
+	 */
+	public abstract void compute(int begin, int end);
+}
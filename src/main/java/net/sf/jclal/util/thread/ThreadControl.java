@@ -29,7 +29,10 @@ import java.util.logging.Logger;
  *
  * @author Oscar Gabriel Reyes Pupo
  * @author Eduardo Perez Perdomo
+ * @deprecated A new thread pool is created in each use, use
+ *             {@link ParallelControl} instead.
  */
+@Deprecated
 public class ThreadControl {
 
 	/**
@@ -174,4 +177,4 @@ public class ThreadControl {
 		return isParallelContext
 				? new ThreadControl(systemProperty) : new ThreadControl(1);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
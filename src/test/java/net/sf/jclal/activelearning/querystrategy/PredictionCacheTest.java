@@ -0,0 +1,124 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.activelearning.querystrategy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests of the cache of predictions.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class PredictionCacheTest {
+
+	/**
+	 * The predictions of an old version of the model are not stored, and the
+	 * invalidation discards the stored ones.
+	 */
+	@Test
+	public void testVersioning() {
+
+		PredictionCache cache = new PredictionCache(10);
+
+		long version = cache.getVersion();
+
+		cache.put(version, PredictionCache.MODEL, 3, new double[] { 0.2, 0.8 });
+
+		Assert.assertArrayEquals(new double[] { 0.2, 0.8 }, cache.get(PredictionCache.MODEL, 3), 0);
+		Assert.assertNull(cache.get(0, 3));
+
+		cache.invalidate();
+
+		Assert.assertTrue(cache.getVersion() > version);
+		Assert.assertNull(cache.get(PredictionCache.MODEL, 3));
+
+		// A prediction computed before the invalidation
+		cache.put(version, PredictionCache.MODEL, 3, new double[] { 0.2, 0.8 });
+
+		Assert.assertNull(cache.get(PredictionCache.MODEL, 3));
+
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(3, cache.getMisses());
+
+		cache.resetCounters();
+
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(0, cache.getMisses());
+	}
+
+	/**
+	 * The cache stores copies of the predictions.
+	 */
+	@Test
+	public void testCopies() {
+
+		PredictionCache cache = new PredictionCache(10);
+
+		double[] buffer = { 0.5, 0.5 };
+
+		cache.put(cache.getVersion(), PredictionCache.MODEL, 0, buffer);
+
+		buffer[0] = 1;
+		buffer[1] = 0;
+
+		Assert.assertArrayEquals(new double[] { 0.5, 0.5 }, cache.get(PredictionCache.MODEL, 0), 0);
+	}
+
+	/**
+	 * Once the cache is full the new predictions are not stored, and the
+	 * stored ones can be replaced.
+	 */
+	@Test
+	public void testCapacity() {
+
+		PredictionCache cache = new PredictionCache(2);
+
+		long version = cache.getVersion();
+
+		cache.put(version, PredictionCache.MODEL, 0, new double[] { 0 });
+		cache.put(version, PredictionCache.MODEL, 1, new double[] { 1 });
+		cache.put(version, PredictionCache.MODEL, 2, new double[] { 2 });
+		cache.put(version, PredictionCache.MODEL, 1, new double[] { 3 });
+
+		Assert.assertArrayEquals(new double[] { 0 }, cache.get(PredictionCache.MODEL, 0), 0);
+		Assert.assertArrayEquals(new double[] { 3 }, cache.get(PredictionCache.MODEL, 1), 0);
+		Assert.assertNull(cache.get(PredictionCache.MODEL, 2));
+
+		cache.invalidate();
+
+		cache.put(cache.getVersion(), PredictionCache.MODEL, 2, new double[] { 2 });
+
+		Assert.assertArrayEquals(new double[] { 2 }, cache.get(PredictionCache.MODEL, 2), 0);
+	}
+
+	/**
+	 * A cache with capacity 0 is disabled.
+	 */
+	@Test
+	public void testDisabled() {
+
+		PredictionCache cache = new PredictionCache(0);
+
+		Assert.assertFalse(cache.isEnabled());
+
+		cache.put(cache.getVersion(), PredictionCache.MODEL, 0, new double[] { 1 });
+
+		Assert.assertNull(cache.get(PredictionCache.MODEL, 0));
+		Assert.assertEquals(0, cache.getMisses());
+	}
+}
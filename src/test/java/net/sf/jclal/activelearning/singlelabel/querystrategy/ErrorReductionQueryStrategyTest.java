@@ -0,0 +1,345 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.activelearning.singlelabel.querystrategy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import net.sf.jclal.classifier.WekaClassifier;
+import net.sf.jclal.core.IClassifier;
+import net.sf.jclal.dataset.WekaDataset;
+import net.sf.jclal.util.sort.OrderUtils;
+import net.sf.jclal.util.thread.ParallelControl;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.UpdateableClassifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.bayes.NaiveBayesMultinomialUpdateable;
+import weka.classifiers.bayes.NaiveBayesUpdateable;
+import weka.classifiers.functions.SGD;
+import weka.classifiers.lazy.IBk;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Unit tests of the models trained with a hypothetical instance by the error
+ * reduction query strategies.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class ErrorReductionQueryStrategyTest {
+
+	private static String cores;
+
+	@BeforeClass
+	public static void setUpClass() {
+		cores = System.getProperty(ParallelControl.CORES_PROPERTY);
+		ParallelControl.setParallelism(4);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (cores == null) {
+			System.clearProperty(ParallelControl.CORES_PROPERTY);
+		} else {
+			System.setProperty(ParallelControl.CORES_PROPERTY, cores);
+		}
+	}
+
+	/**
+	 * Only the classifiers whose updates can be reverted use the incremental
+	 * retraining.
+	 */
+	@Test
+	public void testRevertible() {
+
+		Assert.assertTrue(ErrorReductionQueryStrategy.isRevertible(new NaiveBayesUpdateable()));
+		Assert.assertTrue(ErrorReductionQueryStrategy.isRevertible(new NaiveBayesMultinomialUpdateable()));
+
+		Assert.assertFalse(ErrorReductionQueryStrategy.isRevertible(new IBk()));
+		Assert.assertFalse(ErrorReductionQueryStrategy.isRevertible(new SGD()));
+		Assert.assertFalse(ErrorReductionQueryStrategy.isRevertible(new NaiveBayesUpdateable() {
+			private static final long serialVersionUID = 1L;
+		}));
+		Assert.assertFalse(ErrorReductionQueryStrategy.isRevertible(null));
+	}
+
+	/**
+	 * After reverting the previous hypothetical instance, the model of
+	 * NaiveBayesUpdateable is the one of the labeled set updated with the new
+	 * instance.
+	 */
+	@Test
+	public void testRevertNaiveBayesUpdateable() throws Exception {
+		checkModels(new NaiveBayesUpdateable(), true, 1e-9);
+	}
+
+	/**
+	 * After reverting the previous hypothetical instance, the model of
+	 * NaiveBayesMultinomialUpdateable is the one of the labeled set updated
+	 * with the new instance.
+	 */
+	@Test
+	public void testRevertNaiveBayesMultinomialUpdateable() throws Exception {
+		checkModels(new NaiveBayesMultinomialUpdateable(), true, 1e-9);
+	}
+
+	/**
+	 * IBk is updateable but it can not remove an instance, so it is rebuilt
+	 * even if the incremental retraining is enabled.
+	 */
+	@Test
+	public void testIBkIsRebuilt() throws Exception {
+		checkModels(new IBk(3), false, 0);
+	}
+
+	/**
+	 * The k best candidates with pruning are the ones without pruning, with the
+	 * same utilities, sequentially and in parallel. The rest of candidates are
+	 * either abandoned or have the same utility.
+	 */
+	@Test
+	public void testPruningTopK() {
+
+		Instances labeled = dataset(30, 3);
+		Instances unlabeled = dataset(60, 4);
+
+		Assert.assertEquals(4, ParallelControl.getParallelism());
+
+		for (boolean parallel : new boolean[] { false, true }) {
+
+			double[] expected = utilities(labeled, unlabeled, parallel, 0);
+
+			for (int k : new int[] { 1, 5 }) {
+
+				double[] actual = utilities(labeled, unlabeled, parallel, k);
+
+				Assert.assertArrayEquals(OrderUtils.selectBest(expected, k, false, false),
+						OrderUtils.selectBest(actual, k, false, false));
+
+				int abandoned = 0;
+
+				for (int i = 0; i < expected.length; i++) {
+					if (actual[i] == Double.POSITIVE_INFINITY) {
+						++abandoned;
+					} else {
+						Assert.assertEquals(expected[i], actual[i], 0);
+					}
+				}
+
+				Assert.assertTrue(abandoned > 0);
+			}
+		}
+	}
+
+	/**
+	 * The utilities of the unlabeled set with the expected 0/1 loss.
+	 */
+	private static double[] utilities(Instances labeled, Instances unlabeled, boolean parallel, int pruningTopK) {
+
+		ExpectedCeroOneLossQueryStrategy strategy = new ExpectedCeroOneLossQueryStrategy();
+
+		WekaClassifier classifier = new WekaClassifier();
+		classifier.setClassifier(new NaiveBayes());
+
+		strategy.setClassifier(classifier);
+		strategy.setLabelledData(new WekaDataset(labeled));
+		strategy.setUnlabelledData(new WekaDataset(unlabeled));
+		strategy.setPruningTopK(pruningTopK);
+		strategy.setParallel(parallel);
+
+		strategy.training();
+
+		return strategy.testUnlabeledData();
+	}
+
+	/**
+	 * Every model trained with a hypothetical instance during the test of the
+	 * unlabeled set is compared with a model trained from scratch, sequentially
+	 * and in parallel. In parallel the grid of retrainings is split in one task
+	 * per core, or per allowed concurrent retraining, and each task runs in a
+	 * single thread.
+	 */
+	private static void checkModels(Classifier base, boolean updated, double tolerance) throws Exception {
+
+		Instances labeled = dataset(30, 1);
+		Instances unlabeled = dataset(15, 2);
+
+		Assert.assertEquals(4, ParallelControl.getParallelism());
+
+		// the maximum number of concurrent retrainings of each run, 1 is
+		// sequential and 2 is set with max-concurrent-retrains
+		for (int tasks : new int[] { 1, 4, 2 }) {
+
+			boolean parallel = tasks > 1;
+
+			ModelCheck strategy = new ModelCheck(base, updated, labeled, unlabeled);
+
+			WekaClassifier classifier = new WekaClassifier();
+			classifier.setClassifier(AbstractClassifier.makeCopy(base));
+
+			strategy.setClassifier(classifier);
+			strategy.setLabelledData(new WekaDataset(labeled));
+			strategy.setUnlabelledData(new WekaDataset(unlabeled));
+			strategy.setIncrementalRetrain(true);
+			strategy.setParallel(parallel);
+			strategy.setMaxConcurrentRetrains(tasks == 2 ? 2 : 0);
+
+			strategy.training();
+
+			strategy.testUnlabeledData();
+
+			Assert.assertEquals(unlabeled.numInstances() * unlabeled.numClasses(), strategy.checked);
+			Assert.assertTrue("difference " + strategy.maxDifference, strategy.maxDifference <= tolerance);
+			Assert.assertTrue("threads " + strategy.threads, strategy.threads.size() <= tasks);
+		}
+	}
+
+	/**
+	 * A dataset of counts with three classes.
+	 */
+	private static Instances dataset(int size, long seed) {
+
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+
+		for (int a = 0; a < 4; a++) {
+			attributes.add(new Attribute("a" + a));
+		}
+
+		ArrayList<String> classes = new ArrayList<String>();
+
+		classes.add("c0");
+		classes.add("c1");
+		classes.add("c2");
+
+		attributes.add(new Attribute("class", classes));
+
+		Instances instances = new Instances("counts", attributes, size);
+
+		instances.setClassIndex(attributes.size() - 1);
+
+		Random random = new Random(seed);
+
+		for (int i = 0; i < size; i++) {
+
+			double[] values = new double[attributes.size()];
+
+			int c = random.nextInt(classes.size());
+
+			for (int a = 0; a < values.length - 1; a++) {
+				values[a] = random.nextInt(3 + 2 * (a == c ? 1 : 0) + 1);
+			}
+
+			values[values.length - 1] = c;
+
+			instances.add(new DenseInstance(1, values));
+		}
+
+		return instances;
+	}
+
+	/**
+	 * Compares the model of each hypothetical instance with the expected
+	 * model.
+	 */
+	private static class ModelCheck extends ExpectedCeroOneLossQueryStrategy {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Classifier base;
+
+		private final boolean updated;
+
+		private final Instances labeled;
+
+		private final Instances unlabeled;
+
+		private int checked;
+
+		private double maxDifference;
+
+		private final Set<Thread> threads = new HashSet<Thread>();
+
+		ModelCheck(Classifier base, boolean updated, Instances labeled, Instances unlabeled) {
+			this.base = base;
+			this.updated = updated;
+			this.labeled = labeled;
+			this.unlabeled = unlabeled;
+		}
+
+		@Override
+		protected double expectedLoss(int instanceToAdd, int classValue) {
+
+			try {
+				IClassifier model = trainWithInstance(instanceToAdd, classValue);
+
+				Instance instance = (Instance) unlabeled.instance(instanceToAdd).copy();
+
+				instance.setClassValue(classValue);
+
+				Classifier expected = AbstractClassifier.makeCopy(base);
+
+				if (updated) {
+					// the model of the labeled set updated only with this
+					// instance
+					expected.buildClassifier(labeled);
+
+					((UpdateableClassifier) expected).updateClassifier(instance);
+				} else {
+					Instances train = new Instances(labeled);
+
+					train.add(instance);
+
+					expected.buildClassifier(train);
+				}
+
+				double difference = 0;
+
+				for (int j = 0; j < unlabeled.numInstances(); j++) {
+
+					double[] actual = model.distributionForInstance(unlabeled.instance(j));
+					double[] reference = expected.distributionForInstance(unlabeled.instance(j));
+
+					for (int c = 0; c < reference.length; c++) {
+						difference = Math.max(difference, Math.abs(actual[c] - reference[c]));
+					}
+				}
+
+				synchronized (this) {
+					++checked;
+					maxDifference = Math.max(maxDifference, difference);
+					threads.add(Thread.currentThread());
+				}
+
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+
+			return 0;
+		}
+	}
+}
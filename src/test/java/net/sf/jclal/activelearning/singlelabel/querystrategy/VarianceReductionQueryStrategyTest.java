@@ -0,0 +1,351 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.activelearning.singlelabel.querystrategy;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.sf.jclal.classifier.WekaClassifier;
+import net.sf.jclal.core.IRandGen;
+import net.sf.jclal.core.ISystem;
+import net.sf.jclal.dataset.WekaDataset;
+import net.sf.jclal.util.random.RanecuFactory;
+import net.sf.jclal.util.thread.ParallelControl;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import weka.classifiers.bayes.NaiveBayes;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+import weka.core.matrix.EigenvalueDecomposition;
+import weka.core.matrix.Matrix;
+
+/**
+ * Unit tests of the incremental Fisher matrix and the truncated eigen-solver
+ * of the variance reduction query strategy, and of the scoring of candidates.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class VarianceReductionQueryStrategyTest {
+
+	/**
+	 * The number of features of the instances.
+	 */
+	private static final int FEATURES = 20;
+
+	/**
+	 * The number of features of the parallel tests, the Fisher matrix has
+	 * several blocks of 64 rows.
+	 */
+	private static final int PARALLEL_FEATURES = 150;
+
+	private static String cores;
+
+	@BeforeClass
+	public static void setUpClass() {
+		cores = System.getProperty(ParallelControl.CORES_PROPERTY);
+		ParallelControl.setParallelism(4);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (cores == null) {
+			System.clearProperty(ParallelControl.CORES_PROPERTY);
+		} else {
+			System.setProperty(ParallelControl.CORES_PROPERTY, cores);
+		}
+	}
+
+	/**
+	 * The Fisher matrix maintained between iterations gives the same utilities
+	 * as the matrix computed from scratch in each iteration.
+	 */
+	@Test
+	public void testIncrementalFisher() {
+		compare(strategy(false, 0, false, FEATURES), strategy(true, 0, false, FEATURES), 1e-6);
+	}
+
+	/**
+	 * The same with the truncated eigen-solver, in parallel.
+	 */
+	@Test
+	public void testIncrementalFisherTruncated() {
+		compare(strategy(false, 4, true, FEATURES), strategy(true, 4, true, FEATURES), 1e-6);
+	}
+
+	/**
+	 * The Fisher matrix accumulated in parallel by blocks of rows gives the
+	 * same utilities.
+	 */
+	@Test
+	public void testParallelFisher() {
+
+		Assert.assertEquals(4, ParallelControl.getParallelism());
+
+		compare(strategy(false, 0, false, PARALLEL_FEATURES), strategy(false, 0, true, PARALLEL_FEATURES), 1e-9);
+	}
+
+	/**
+	 * When only some candidates are scored, the utilities are the ones of an
+	 * unlabeled set with only the candidates, and the next scoring of the
+	 * whole unlabeled set does not use the state of the candidates.
+	 */
+	@Test
+	public void testCandidates() {
+
+		VarianceReductionQueryStrategy strategy = strategy(true, 0, false, FEATURES);
+
+		converging(strategy);
+
+		strategy.training();
+
+		double[] before = strategy.testUnlabeledData();
+
+		Instances unlabeled = strategy.getUnlabelledData().getDataset();
+
+		int[] positions = new int[unlabeled.numInstances() / 3];
+
+		Instances candidates = new Instances(unlabeled, positions.length);
+
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = 3 * i + 1;
+			candidates.add(unlabeled.instance(positions[i]));
+		}
+
+		VarianceReductionQueryStrategy expected = strategy(false, 0, false, FEATURES);
+
+		expected.setUnlabelledData(new WekaDataset(candidates));
+
+		converging(expected);
+
+		expected.training();
+
+		Assert.assertArrayEquals(expected.testUnlabeledData(), strategy.testUnlabeledData(positions), 1e-12);
+
+		Assert.assertArrayEquals(before, strategy.testUnlabeledData(), 1e-12);
+	}
+
+	/**
+	 * The largest eigenpairs of the truncated eigen-solver are the ones of the
+	 * full decomposition, sequentially and in parallel. The matrix has the
+	 * form of a Fisher matrix, the regularization factor in the diagonal plus
+	 * a positive semi-definite matrix.
+	 */
+	@Test
+	public void testTruncatedEigen() {
+
+		int dimension = PARALLEL_FEATURES;
+
+		int rank = 10;
+
+		Random random = new Random(3);
+
+		// a random orthonormal basis
+		double[][] symmetric = new double[dimension][dimension];
+
+		for (int m = 0; m < dimension; m++) {
+			for (int n = m; n < dimension; n++) {
+				symmetric[m][n] = symmetric[n][m] = random.nextGaussian();
+			}
+		}
+
+		double[][] basis = new Matrix(symmetric).eig().getV().getArray();
+
+		double[][] fisher = new double[dimension][dimension];
+
+		for (int j = 0; j < dimension; j++) {
+
+			double value = 100 * Math.pow(0.8, j);
+
+			for (int m = 0; m < dimension; m++) {
+				for (int n = m; n < dimension; n++) {
+					fisher[m][n] += value * basis[m][j] * basis[n][j];
+				}
+			}
+		}
+
+		// exactly symmetric, so the eigenvalues of eig are in ascending order
+		for (int m = 0; m < dimension; m++) {
+
+			for (int n = 0; n < m; n++) {
+				fisher[m][n] = fisher[n][m];
+			}
+
+			fisher[m][m] += 1000;
+		}
+
+		EigenvalueDecomposition eigen = new Matrix(fisher).eig();
+
+		double[] values = eigen.getRealEigenvalues();
+
+		double[][] vectors = eigen.getV().getArray();
+
+		for (boolean parallel : new boolean[] { false, true }) {
+
+			VarianceReductionQueryStrategy strategy = strategy(false, rank, parallel, FEATURES);
+
+			strategy.truncatedEigen(fisher, null);
+
+			Assert.assertEquals(rank, strategy.eigenvalues.length);
+
+			// both in ascending order
+			for (int j = 0; j < rank; j++) {
+
+				int full = dimension - rank + j;
+
+				Assert.assertEquals(values[full], strategy.eigenvalues[j], 1e-9 * values[full]);
+
+				double dot = 0;
+
+				for (int m = 0; m < dimension; m++) {
+					dot += vectors[m][full] * strategy.eigenvectors[m][j];
+				}
+
+				// the same vector up to the sign
+				Assert.assertEquals(1, Math.abs(dot), 1e-6);
+			}
+		}
+	}
+
+	/**
+	 * Several iterations of both strategies, the instance selected by the
+	 * first one is labeled in both of them.
+	 */
+	private static void compare(VarianceReductionQueryStrategy expected, VarianceReductionQueryStrategy actual,
+			double tolerance) {
+
+		for (int iteration = 0; iteration < 8; iteration++) {
+
+			expected.training();
+			actual.training();
+
+			double[] expectedUtilities = expected.testUnlabeledData();
+			double[] actualUtilities = actual.testUnlabeledData();
+
+			Assert.assertEquals(expectedUtilities.length, actualUtilities.length);
+
+			double scale = 0;
+			double difference = 0;
+
+			for (int i = 0; i < expectedUtilities.length; i++) {
+				scale = Math.max(scale, Math.abs(expectedUtilities[i]));
+				difference = Math.max(difference, Math.abs(expectedUtilities[i] - actualUtilities[i]));
+			}
+
+			Assert.assertTrue("iteration " + iteration + ", difference " + difference / scale,
+					difference <= tolerance * scale);
+
+			int best = Utils.maxIndex(expectedUtilities);
+
+			expected.getSelectedInstances().add(best);
+			actual.getSelectedInstances().add(best);
+
+			expected.updateLabeledData();
+			actual.updateLabeledData();
+		}
+	}
+
+	/**
+	 * A regularization factor and an epsilon that make q converge.
+	 */
+	private static void converging(VarianceReductionQueryStrategy strategy) {
+		strategy.setFactorRegularization(1);
+		strategy.setEpsilon(1e-12);
+		strategy.setMaxEpsilonIteration(100);
+	}
+
+	private static VarianceReductionQueryStrategy strategy(boolean incremental, int eigenRank, boolean parallel,
+			int features) {
+
+		VarianceReductionQueryStrategy strategy = new VarianceReductionQueryStrategy();
+
+		WekaClassifier classifier = new WekaClassifier();
+		classifier.setClassifier(new NaiveBayes());
+
+		strategy.setClassifier(classifier);
+		strategy.setLabelledData(new WekaDataset(dataset(20, 1, features)));
+		strategy.setUnlabelledData(new WekaDataset(dataset(150, 2, features)));
+		strategy.setIncrementalFisher(incremental);
+		strategy.setEigenRank(eigenRank);
+		strategy.setParallel(parallel);
+
+		strategy.contextualize(new ISystem() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public IRandGen createRandGen() {
+
+				RanecuFactory factory = new RanecuFactory();
+
+				factory.setSeed(5);
+
+				return factory.createRandGen();
+			}
+		});
+
+		return strategy;
+	}
+
+	/**
+	 * A dataset of numeric features with three classes.
+	 */
+	private static Instances dataset(int size, long seed, int features) {
+
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+
+		for (int a = 0; a < features; a++) {
+			attributes.add(new Attribute("a" + a));
+		}
+
+		ArrayList<String> classes = new ArrayList<String>();
+
+		classes.add("c0");
+		classes.add("c1");
+		classes.add("c2");
+
+		attributes.add(new Attribute("class", classes));
+
+		Instances instances = new Instances("features", attributes, size);
+
+		instances.setClassIndex(attributes.size() - 1);
+
+		Random random = new Random(seed);
+
+		for (int i = 0; i < size; i++) {
+
+			double[] values = new double[attributes.size()];
+
+			int c = random.nextInt(classes.size());
+
+			for (int a = 0; a < features; a++) {
+				values[a] = random.nextGaussian() + (a % classes.size() == c ? 1 : 0);
+			}
+
+			values[features] = c;
+
+			instances.add(new DenseInstance(1, values));
+		}
+
+		return instances;
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.dataset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Unit tests of the removal of instances from a dataset.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class AbstractDatasetTest {
+
+	/**
+	 * The batch removal gives the same dataset as removing the instances one
+	 * by one, from the greatest position to the lowest.
+	 */
+	@Test
+	public void testRemoveIndexes() {
+
+		Random random = new Random(1);
+
+		for (int trial = 0; trial < 20; trial++) {
+
+			int size = 1 + random.nextInt(100);
+
+			List<Integer> indexes = new ArrayList<Integer>();
+
+			for (int i = 0; i < size; i++) {
+				if (random.nextInt(3) == 0) {
+					indexes.add(i);
+				}
+			}
+
+			// Unordered and with a repeated position
+			Collections.shuffle(indexes, random);
+
+			if (!indexes.isEmpty()) {
+				indexes.add(indexes.get(0));
+			}
+
+			int[] positions = new int[indexes.size()];
+
+			for (int i = 0; i < positions.length; i++) {
+				positions[i] = indexes.get(i);
+			}
+
+			WekaDataset batch = dataset(size);
+
+			batch.removeIndexes(positions);
+
+			WekaDataset expected = dataset(size);
+
+			for (int i = size - 1; i >= 0; i--) {
+				if (indexes.contains(i)) {
+					expected.remove(i);
+				}
+			}
+
+			Assert.assertEquals(expected.getNumInstances(), batch.getNumInstances());
+
+			for (int i = 0; i < expected.getNumInstances(); i++) {
+				Assert.assertEquals(expected.instance(i).value(0), batch.instance(i).value(0), 0);
+			}
+		}
+	}
+
+	/**
+	 * An invalid position is rejected before any instance is removed.
+	 */
+	@Test
+	public void testRemoveIndexesOutOfBounds() {
+
+		WekaDataset dataset = dataset(10);
+
+		try {
+			dataset.removeIndexes(new int[] { 2, 10 });
+
+			Assert.fail("The invalid position was accepted");
+
+		} catch (IndexOutOfBoundsException ex) {
+			Assert.assertEquals(10, dataset.getNumInstances());
+		}
+
+		dataset.removeIndexes(new int[0]);
+
+		Assert.assertEquals(10, dataset.getNumInstances());
+	}
+
+	/**
+	 * A dataset whose instance i has the value i.
+	 */
+	private static WekaDataset dataset(int size) {
+
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+
+		attributes.add(new Attribute("position"));
+
+		Instances instances = new Instances("test", attributes, size);
+
+		for (int i = 0; i < size; i++) {
+			instances.add(new DenseInstance(1, new double[] { i }));
+		}
+
+		return new WekaDataset(instances);
+	}
+}
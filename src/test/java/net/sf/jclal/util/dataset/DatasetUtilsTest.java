@@ -0,0 +1,104 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.dataset;
+
+import net.sf.jclal.core.IRandGen;
+import net.sf.jclal.util.random.RanecuFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests of the dataset utilities.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class DatasetUtilsTest {
+
+	/**
+	 * The sample has the requested size, its positions are different, valid
+	 * and in ascending order.
+	 */
+	@Test
+	public void testSamplePositions() {
+
+		IRandGen randGen = randGen(1);
+
+		int n = 50;
+
+		for (int size = 0; size <= n; size++) {
+
+			int[] sample = DatasetUtils.samplePositions(randGen, n, size);
+
+			Assert.assertEquals(size, sample.length);
+
+			for (int i = 0; i < sample.length; i++) {
+
+				Assert.assertTrue(sample[i] >= 0 && sample[i] < n);
+
+				if (i > 0) {
+					Assert.assertTrue(sample[i - 1] < sample[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Every position is drawn with the same probability.
+	 */
+	@Test
+	public void testSamplePositionsUniform() {
+
+		IRandGen randGen = randGen(7);
+
+		int n = 20;
+		int size = 5;
+		int draws = 20000;
+
+		int[] counts = new int[n];
+
+		for (int d = 0; d < draws; d++) {
+			for (int position : DatasetUtils.samplePositions(randGen, n, size)) {
+				counts[position]++;
+			}
+		}
+
+		// Each position is expected draws * size / n = 5000 times
+		for (int count : counts) {
+			Assert.assertTrue("count " + count, Math.abs(count - 5000) < 400);
+		}
+	}
+
+	/**
+	 * The same seed gives the same sample.
+	 */
+	@Test
+	public void testSamplePositionsReproducible() {
+
+		Assert.assertArrayEquals(DatasetUtils.samplePositions(randGen(3), 1000, 30),
+				DatasetUtils.samplePositions(randGen(3), 1000, 30));
+	}
+
+	private static IRandGen randGen(int seed) {
+
+		RanecuFactory factory = new RanecuFactory();
+
+		factory.setSeed(seed);
+
+		return factory.createRandGen();
+	}
+}
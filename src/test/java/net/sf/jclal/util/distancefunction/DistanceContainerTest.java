@@ -0,0 +1,229 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import net.sf.jclal.util.thread.ParallelControl;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.EuclideanDistance;
+import weka.core.Instances;
+
+/**
+ * Unit tests of the container of the distances among the instances of a pool.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class DistanceContainerTest {
+
+	private static String cores;
+
+	@BeforeClass
+	public static void setUpClass() {
+		cores = System.getProperty(ParallelControl.CORES_PROPERTY);
+		ParallelControl.setParallelism(4);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (cores == null) {
+			System.clearProperty(ParallelControl.CORES_PROPERTY);
+		} else {
+			System.setProperty(ParallelControl.CORES_PROPERTY, cores);
+		}
+	}
+
+	/**
+	 * Removing a batch of instances gives the same indexes and accumulative
+	 * values as removing them one by one, from the biggest index to the
+	 * smallest.
+	 */
+	@Test
+	public void testUpdateIndexes() throws Exception {
+
+		Instances instances = dataset(700, 5, 5);
+
+		for (boolean parallel : new boolean[] { false, true }) {
+
+			DistanceContainer batch = new DistanceContainer(instances, new EuclideanDistance(instances), false,
+					parallel);
+			DistanceContainer oneByOne = new DistanceContainer(instances, new EuclideanDistance(instances), false,
+					parallel);
+
+			Random random = new Random(9);
+
+			for (int iteration = 0; iteration < 40; iteration++) {
+
+				ArrayList<Integer> removed = new ArrayList<Integer>();
+
+				int length = 1 + random.nextInt(8);
+
+				for (int i = 0; i < length; i++) {
+					removed.add(random.nextInt(batch.getSize()));
+				}
+
+				// The repeated indexes are removed once
+				removed.add(removed.get(0));
+
+				batch.updateIndexes(removed);
+
+				ArrayList<Integer> ordered = new ArrayList<Integer>(removed);
+
+				Collections.sort(ordered, Collections.reverseOrder());
+
+				for (int i = 0; i < ordered.size(); i++) {
+					if (i == 0 || !ordered.get(i).equals(ordered.get(i - 1))) {
+						oneByOne.updateIndex(ordered.get(i));
+					}
+				}
+
+				Assert.assertEquals(oneByOne.getSize(), batch.getSize());
+
+				for (int i = 0; i < batch.getSize(); i++) {
+					Assert.assertEquals(oneByOne.index(i), batch.index(i));
+					Assert.assertEquals(oneByOne.getAcumulativeValue(i), batch.getAcumulativeValue(i), 0);
+				}
+			}
+
+			batch.updateIndexes(new ArrayList<Integer>());
+
+			Assert.assertEquals(oneByOne.getSize(), batch.getSize());
+
+			batch.destroy();
+			oneByOne.destroy();
+		}
+	}
+
+	/**
+	 * The distances, the minimum and maximum distance and the accumulative
+	 * values built in parallel are the ones built sequentially.
+	 */
+	@Test
+	public void testParallelBuild() throws Exception {
+
+		Assert.assertEquals(4, ParallelControl.getParallelism());
+
+		Instances instances = dataset(700, 5, 7);
+
+		int size = instances.numInstances();
+
+		TriangularStorage sequential = TriangularStorage.packed(size, false);
+		TriangularStorage parallel = TriangularStorage.packed(size, false);
+
+		double[] sequentialBounds = DistanceContainer.computeDistances(instances, new EuclideanDistance(instances),
+				false, sequential);
+		double[] parallelBounds = DistanceContainer.computeDistances(instances, new EuclideanDistance(instances),
+				true, parallel);
+
+		Assert.assertArrayEquals(sequentialBounds, parallelBounds, 0);
+
+		for (int row = 0; row < size; row++) {
+			for (int column = 0; column < size - row - 1; column++) {
+				Assert.assertEquals(sequential.get(row, column), parallel.get(row, column), 0);
+			}
+		}
+
+		DistanceContainer expected = new DistanceContainer(instances, new EuclideanDistance(instances), false, false);
+		DistanceContainer actual = new DistanceContainer(instances, new EuclideanDistance(instances), false, true);
+
+		for (int i = 0; i < size; i++) {
+
+			Assert.assertEquals(expected.getAcumulativeValue(i), actual.getAcumulativeValue(i), 0);
+
+			for (int j = 0; j < size; j++) {
+				Assert.assertEquals(expected.getDistance(i, j), actual.getDistance(i, j), 0);
+			}
+		}
+
+		expected.destroy();
+		actual.destroy();
+	}
+
+	/**
+	 * The ranges of rows of the parallel build are consecutive, they cover all
+	 * the rows and they have about the same number of distances.
+	 */
+	@Test
+	public void testFirstRow() {
+
+		for (int size : new int[] { 0, 1, 2, 7, 100, 701 }) {
+
+			long total = (long) size * (size - 1) / 2;
+
+			for (int count = 1; count <= 5; count++) {
+
+				Assert.assertEquals(0, DistanceContainer.firstRow(size, 0, count));
+				Assert.assertEquals(Math.max(0, size - 1), DistanceContainer.firstRow(size, count, count));
+
+				for (int range = 0; range < count; range++) {
+
+					int begin = DistanceContainer.firstRow(size, range, count);
+					int end = DistanceContainer.firstRow(size, range + 1, count);
+
+					Assert.assertTrue(begin <= end);
+
+					long distances = 0;
+
+					for (int row = begin; row < end; row++) {
+						distances += size - row - 1;
+					}
+
+					// at most one row more than an equal share
+					Assert.assertTrue(Math.abs(distances - total / count) <= size);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A dataset of numeric attributes with random values.
+	 */
+	static Instances dataset(int size, int numAttributes, long seed) {
+
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+
+		for (int a = 0; a < numAttributes; a++) {
+			attributes.add(new Attribute("a" + a));
+		}
+
+		Instances instances = new Instances("random", attributes, size);
+
+		Random random = new Random(seed);
+
+		for (int i = 0; i < size; i++) {
+
+			double[] values = new double[numAttributes];
+
+			for (int a = 0; a < numAttributes; a++) {
+				values[a] = random.nextGaussian();
+			}
+
+			instances.add(new DenseInstance(1, values));
+		}
+
+		return instances;
+	}
+}
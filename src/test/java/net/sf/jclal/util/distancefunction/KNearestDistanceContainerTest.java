@@ -0,0 +1,178 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import net.sf.jclal.util.thread.ParallelControl;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import weka.core.EuclideanDistance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Unit tests of the container of the distances to the k-nearest neighbors.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class KNearestDistanceContainerTest {
+
+	private static String cores;
+
+	@BeforeClass
+	public static void setUpClass() {
+		cores = System.getProperty(ParallelControl.CORES_PROPERTY);
+		ParallelControl.setParallelism(4);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (cores == null) {
+			System.clearProperty(ParallelControl.CORES_PROPERTY);
+		} else {
+			System.setProperty(ParallelControl.CORES_PROPERTY, cores);
+		}
+	}
+
+	/**
+	 * The neighbors are the first k instances sorted by distance, the ties
+	 * broken by the index, before and after removing instances.
+	 */
+	@Test
+	public void testNearestNeighbors() throws Exception {
+
+		Instances instances = DistanceContainerTest.dataset(300, 3, 5);
+
+		// Repeated instances and rounded values give ties
+		for (int i = 0; i < 300; i += 7) {
+			for (int a = 0; a < 3; a++) {
+				instances.instance(i).setValue(a, Math.round(instances.instance(i).value(a)));
+			}
+		}
+
+		for (int i = 0; i < 30; i++) {
+			instances.add((Instance) instances.instance(i * 3).copy());
+		}
+
+		int n = instances.numInstances();
+
+		for (int k : new int[] { 1, 5, 12 }) {
+			for (boolean parallel : new boolean[] { false, true }) {
+
+				EuclideanDistance distance = new EuclideanDistance(instances);
+
+				KNearestDistanceContainer container = parallel ? new KNearestDistanceContainer(instances,
+						distance, k, true) : new KNearestDistanceContainer(instances, distance, k);
+
+				int[][] nearest = new int[n][];
+
+				for (int i = 0; i < n; i++) {
+
+					nearest[i] = nearest(container, i, k);
+
+					double sum = 0;
+
+					for (int j : nearest[i]) {
+						sum += container.getDistance(i, j);
+					}
+
+					Assert.assertEquals(sum / k, container.getAccumulativeDistanceKNearest(i), 0);
+				}
+
+				// The removed neighbors are not replaced
+				boolean[] removed = new boolean[n];
+
+				Random random = new Random(11);
+
+				for (int iteration = 0; iteration < 20; iteration++) {
+
+					ArrayList<Integer> batch = new ArrayList<Integer>();
+
+					while (batch.size() < 5) {
+
+						int index = random.nextInt(container.getSize());
+
+						if (!batch.contains(index)) {
+							batch.add(index);
+						}
+					}
+
+					for (int index : batch) {
+						removed[container.index(index)] = true;
+					}
+
+					container.updateIndexes(batch);
+
+					for (int i = 0; i < container.getSize(); i++) {
+
+						int original = container.index(i);
+
+						double sum = 0;
+
+						for (int j : nearest[original]) {
+							if (!removed[j]) {
+								sum += container.getOriginalDistance(original, j);
+							}
+						}
+
+						Assert.assertEquals(sum / k, container.getAccumulativeDistanceKNearest(i), 1e-9);
+					}
+				}
+
+				container.destroy();
+			}
+		}
+	}
+
+	/**
+	 * The k-nearest neighbors of an instance by sorting the rest of instances
+	 * by distance, the sort is stable so the ties are broken by the index.
+	 */
+	private static int[] nearest(final KNearestDistanceContainer container, final int index, int k) {
+
+		Integer[] others = new Integer[container.getSize() - 1];
+
+		for (int j = 0, n = 0; j < container.getSize(); j++) {
+			if (j != index) {
+				others[n++] = j;
+			}
+		}
+
+		Arrays.sort(others, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer first, Integer second) {
+				return Double.compare(container.getDistance(index, first), container.getDistance(index, second));
+			}
+		});
+
+		int[] nearest = new int[Math.min(k, others.length)];
+
+		for (int i = 0; i < nearest.length; i++) {
+			nearest[i] = others[i];
+		}
+
+		return nearest;
+	}
+}
@@ -0,0 +1,285 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.distancefunction;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ReadOnlyBufferException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests of the storages of the upper triangle of a distance matrix.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class TriangularStorageTest {
+
+	private static final int[] SIZES = { 0, 1, 2, 7, 100 };
+
+	/**
+	 * The rows are packed one after the other, without gaps.
+	 */
+	@Test
+	public void testPositions() {
+
+		for (int size : SIZES) {
+
+			TriangularStorage storage = TriangularStorage.packed(size, false);
+
+			long expected = 0;
+
+			for (int row = 0; row < size; row++) {
+				for (int column = 0; column < size - row - 1; column++) {
+					Assert.assertEquals(expected++, storage.position(row, column));
+				}
+			}
+
+			Assert.assertEquals(expected, storage.length());
+			Assert.assertEquals(size, storage.size());
+		}
+	}
+
+	/**
+	 * Each position of the packed storage in double precision keeps its own
+	 * value.
+	 */
+	@Test
+	public void testPackedDouble() throws Exception {
+
+		for (int size : SIZES) {
+			check(TriangularStorage.packed(size, false), size);
+		}
+	}
+
+	/**
+	 * Each position of the packed storage in single precision keeps its own
+	 * value, the values are exact in float.
+	 */
+	@Test
+	public void testPackedFloat() throws Exception {
+
+		for (int size : SIZES) {
+			check(TriangularStorage.packed(size, true), size);
+		}
+
+		TriangularStorage storage = TriangularStorage.packed(3, true);
+
+		storage.set(0, 1, 0.1);
+
+		Assert.assertEquals((float) 0.1, storage.get(0, 1), 0);
+	}
+
+	/**
+	 * The storage over a file keeps the values as the packed one.
+	 */
+	@Test
+	public void testOverFile() throws Exception {
+
+		TriangularStorage storage = TriangularStorage.overFile(30);
+
+		try {
+			check(storage, 30);
+		} finally {
+			storage.destroy();
+		}
+	}
+
+	/**
+	 * The storage mapped from a file keeps the values after the offset, and
+	 * they are read again when the file is mapped read-only.
+	 */
+	@Test
+	public void testMapped() throws Exception {
+
+		int size = 100;
+
+		File file = File.createTempFile("triangular", ".dist");
+
+		try {
+			RandomAccessFile access = new RandomAccessFile(file, "rw");
+
+			try {
+				access.setLength(16 + (long) size * (size - 1) / 2 * 8);
+			} finally {
+				access.close();
+			}
+
+			TriangularStorage storage = TriangularStorage.mapped(file, 16, size, false);
+
+			check(storage, size);
+
+			storage.destroy();
+
+			storage = TriangularStorage.mapped(file, 16, size, true);
+
+			try {
+				for (int row = 0; row < size; row++) {
+					for (int column = 0; column < size - row - 1; column++) {
+						Assert.assertEquals(value(row, column), storage.get(row, column), 0);
+					}
+				}
+
+				try {
+					storage.set(0, 0, 1);
+
+					Assert.fail("A read-only storage was modified");
+
+				} catch (ReadOnlyBufferException ex) {
+					// expected
+				}
+			} finally {
+				storage.destroy();
+			}
+
+		} finally {
+			Assert.assertTrue(file.delete());
+		}
+	}
+
+	/**
+	 * The view reads the values of the mapped rows, 0 between the same row,
+	 * and it is destroyed with its storage.
+	 */
+	@Test
+	public void testView() throws Exception {
+
+		Storage source = new Storage(6);
+
+		check(source, 6);
+
+		int[] rows = { 4, 1, 4, 0, 5 };
+
+		TriangularStorage view = TriangularStorage.view(source, rows);
+
+		Assert.assertEquals(rows.length, view.size());
+
+		for (int row = 0; row < rows.length; row++) {
+			for (int column = 0; column < rows.length - row - 1; column++) {
+
+				int first = Math.min(rows[row], rows[row + column + 1]);
+				int second = Math.max(rows[row], rows[row + column + 1]);
+
+				double expected = first == second ? 0 : value(first, second - first - 1);
+
+				Assert.assertEquals(expected, view.get(row, column), 0);
+			}
+		}
+
+		try {
+			view.set(0, 0, 1);
+
+			Assert.fail("A view was modified");
+
+		} catch (UnsupportedOperationException ex) {
+			// expected
+		}
+
+		view.destroy();
+
+		Assert.assertTrue(source.destroyed);
+	}
+
+	/**
+	 * The scaled view reads the values scaled to the range, and it is
+	 * destroyed with its storage.
+	 */
+	@Test
+	public void testScaled() throws Exception {
+
+		Storage source = new Storage(10);
+
+		check(source, 10);
+
+		TriangularStorage scaled = TriangularStorage.scaled(source, 0.5, 4);
+
+		for (int row = 0; row < 10; row++) {
+			for (int column = 0; column < 10 - row - 1; column++) {
+				Assert.assertEquals((value(row, column) - 0.5) / 4, scaled.get(row, column), 0);
+			}
+		}
+
+		try {
+			scaled.set(0, 0, 1);
+
+			Assert.fail("A scaled view was modified");
+
+		} catch (UnsupportedOperationException ex) {
+			// expected
+		}
+
+		scaled.destroy();
+
+		Assert.assertTrue(source.destroyed);
+	}
+
+	/**
+	 * Writes a different value in each position and reads them back.
+	 */
+	static void check(TriangularStorage storage, int size) {
+
+		for (int row = 0; row < size; row++) {
+			for (int column = 0; column < size - row - 1; column++) {
+				storage.set(row, column, value(row, column));
+			}
+		}
+
+		for (int row = 0; row < size; row++) {
+			for (int column = 0; column < size - row - 1; column++) {
+				Assert.assertEquals(value(row, column), storage.get(row, column), 0);
+			}
+		}
+	}
+
+	/**
+	 * A value that is exact in float for the tested sizes.
+	 */
+	static double value(int row, int column) {
+		return row * 128 + column + 0.5;
+	}
+
+	/**
+	 * Packed storage that records whether it was destroyed.
+	 */
+	private static final class Storage extends TriangularStorage {
+
+		private final TriangularStorage values;
+
+		private boolean destroyed;
+
+		private Storage(int size) {
+			super(size);
+			values = TriangularStorage.packed(size, false);
+		}
+
+		@Override
+		public double get(int row, int column) {
+			return values.get(row, column);
+		}
+
+		@Override
+		public void set(int row, int column, double value) {
+			values.set(row, column, value);
+		}
+
+		@Override
+		public void destroy() {
+			destroyed = true;
+		}
+	}
+}
@@ -0,0 +1,279 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.matrixFile;
+
+import java.util.Random;
+
+import net.sf.jclal.util.thread.ParallelControl;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit tests of the matrix stored over a file, compared with the matrix
+ * stored in main memory.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class MatrixTest {
+
+	/**
+	 * The sizes are not multiples of the tiles, so the last tiles are partial.
+	 */
+	private static final int ROWS = 300;
+
+	private static final int COLUMNS = 257;
+
+	private static String cores;
+
+	@BeforeClass
+	public static void setUpClass() {
+		cores = System.getProperty(ParallelControl.CORES_PROPERTY);
+		ParallelControl.setParallelism(4);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (cores == null) {
+			System.clearProperty(ParallelControl.CORES_PROPERTY);
+		} else {
+			System.setProperty(ParallelControl.CORES_PROPERTY, cores);
+		}
+	}
+
+	/**
+	 * The position of an element in the file does not overflow when the
+	 * matrix has more than 2^31 elements.
+	 */
+	@Test
+	public void testPositionOverflow() {
+
+		Matrix matrix = new Matrix(1, 100000, 0, false);
+
+		Assert.assertEquals((30000L * 100000 + 7) * 8, matrix.pos(30000, 7));
+	}
+
+	/**
+	 * The rows and blocks read and written over the file are the ones of the
+	 * array.
+	 */
+	@Test
+	public void testRowsAndBlocks() {
+
+		double[][] values = random(ROWS, COLUMNS, 1);
+
+		Matrix matrix = new Matrix(values, true);
+
+		try {
+			assertEquals(values, matrix);
+
+			double[] row = new double[COLUMNS];
+
+			for (int i = 0; i < ROWS; i++) {
+				Assert.assertArrayEquals(values[i], matrix.getRow(i), 0);
+
+				matrix.getRow(i, row);
+
+				Assert.assertArrayEquals(values[i], row, 0);
+			}
+
+			// a block across the tiles
+			double[][] block = new double[150][140];
+
+			matrix.getBlock(100, 90, 150, 140, block);
+
+			for (int r = 0; r < 150; r++) {
+				for (int c = 0; c < 140; c++) {
+					Assert.assertEquals(values[100 + r][90 + c], block[r][c], 0);
+				}
+			}
+
+			double[][] other = random(150, 140, 2);
+
+			matrix.setBlock(100, 90, 150, 140, other);
+
+			for (int r = 0; r < 150; r++) {
+				System.arraycopy(other[r], 0, values[100 + r], 90, 140);
+			}
+
+			double[] newRow = random(1, COLUMNS, 3)[0];
+
+			matrix.setRow(5, newRow);
+
+			values[5] = newRow;
+
+			assertEquals(values, matrix);
+
+			Assert.assertArrayEquals(new Matrix(values, false).getRowPackedCopy(), matrix.getRowPackedCopy(), 0);
+			Assert.assertArrayEquals(new Matrix(values, false).getColumnPackedCopy(), matrix.getColumnPackedCopy(), 0);
+
+		} finally {
+			matrix.destroy();
+		}
+	}
+
+	/**
+	 * The copy, transpose, product and sub-matrix over the file give the same
+	 * values as in main memory.
+	 */
+	@Test
+	public void testOperationsOverFile() {
+
+		double[][] a = random(ROWS, COLUMNS, 4);
+		double[][] b = random(COLUMNS, 130, 5);
+
+		Matrix memoryA = new Matrix(a, false);
+		Matrix memoryB = new Matrix(b, false);
+
+		Matrix fileA = new Matrix(a, true);
+		Matrix fileB = new Matrix(b, true);
+
+		Matrix[] results = new Matrix[0];
+
+		try {
+			Matrix copy = fileA.copy();
+			Matrix transpose = fileA.transpose();
+			Matrix product = fileA.times(fileB);
+			Matrix sub = fileA.getMatrix(10, 200, 20, 150);
+
+			results = new Matrix[] { copy, transpose, product, sub };
+
+			assertEquals(a, copy);
+			assertEquals(toArray(memoryA.transpose()), transpose);
+			assertEquals(toArray(memoryA.times(memoryB)), product);
+			assertEquals(toArray(memoryA.getMatrix(10, 200, 20, 150)), sub);
+
+			// the product in main memory is the usual one
+			double[][] expected = new double[ROWS][130];
+
+			for (int i = 0; i < ROWS; i++) {
+				for (int j = 0; j < 130; j++) {
+					for (int k = 0; k < COLUMNS; k++) {
+						expected[i][j] += a[i][k] * b[k][j];
+					}
+				}
+			}
+
+			Matrix memoryProduct = memoryA.times(memoryB);
+
+			for (int i = 0; i < ROWS; i++) {
+				for (int j = 0; j < 130; j++) {
+					Assert.assertEquals(expected[i][j], memoryProduct.get(i, j), 1e-9);
+				}
+			}
+
+		} finally {
+			fileA.destroy();
+			fileB.destroy();
+
+			for (Matrix result : results) {
+				result.destroy();
+			}
+		}
+	}
+
+	/**
+	 * The parallel kernels give the same values as the sequential ones, in
+	 * main memory and over the file.
+	 */
+	@Test
+	public void testParallelKernels() {
+
+		double[][] a = random(ROWS, COLUMNS, 6);
+		double[][] b = random(ROWS, COLUMNS, 7);
+		double[][] c = random(COLUMNS, 130, 8);
+
+		for (boolean overFile : new boolean[] { false, true }) {
+
+			Matrix[] sequential = { new Matrix(a, overFile), new Matrix(b, overFile), new Matrix(c, overFile) };
+			Matrix[] parallel = { new Matrix(a, overFile), new Matrix(b, overFile), new Matrix(c, overFile) };
+
+			for (Matrix matrix : parallel) {
+				matrix.setParallel(true);
+			}
+
+			try {
+				Assert.assertEquals(sequential[0].norm1(), parallel[0].norm1(), 0);
+				Assert.assertEquals(sequential[0].normF(), parallel[0].normF(), 1e-12 * sequential[0].normF());
+
+				Matrix[][] results = {
+						{ sequential[0].times(sequential[2]), parallel[0].times(parallel[2]) },
+						{ sequential[0].plus(sequential[1]), parallel[0].plus(parallel[1]) },
+						{ sequential[0].arrayTimes(sequential[1]), parallel[0].arrayTimes(parallel[1]) },
+						{ sequential[0].transpose(), parallel[0].transpose() } };
+
+				try {
+					for (Matrix[] result : results) {
+						Assert.assertTrue(result[1].isParallel());
+						assertEquals(toArray(result[0]), result[1]);
+					}
+				} finally {
+					for (Matrix[] result : results) {
+						result[0].destroy();
+						result[1].destroy();
+					}
+				}
+
+			} finally {
+				for (int i = 0; i < sequential.length; i++) {
+					sequential[i].destroy();
+					parallel[i].destroy();
+				}
+			}
+		}
+	}
+
+	static void assertEquals(double[][] expected, Matrix actual) {
+
+		Assert.assertEquals(expected.length, actual.getRowDimension());
+		Assert.assertEquals(expected[0].length, actual.getColumnDimension());
+
+		for (int i = 0; i < expected.length; i++) {
+			for (int j = 0; j < expected[i].length; j++) {
+				Assert.assertEquals(expected[i][j], actual.get(i, j), 0);
+			}
+		}
+	}
+
+	static double[][] toArray(Matrix matrix) {
+
+		double[][] values = new double[matrix.getRowDimension()][];
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = matrix.getRow(i);
+		}
+
+		return values;
+	}
+
+	static double[][] random(int rows, int columns, long seed) {
+
+		Random random = new Random(seed);
+
+		double[][] values = new double[rows][columns];
+
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				values[i][j] = random.nextDouble() - 0.5;
+			}
+		}
+
+		return values;
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.sort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.sf.jclal.util.thread.ParallelControl;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit tests of the ordering utilities.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class OrderUtilsTest {
+
+	private static String cores;
+
+	@BeforeClass
+	public static void setUpClass() {
+		cores = System.getProperty(ParallelControl.CORES_PROPERTY);
+		ParallelControl.setParallelism(4);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (cores == null) {
+			System.clearProperty(ParallelControl.CORES_PROPERTY);
+		} else {
+			System.setProperty(ParallelControl.CORES_PROPERTY, cores);
+		}
+	}
+
+	/**
+	 * The selection of the best positions is the prefix of the merge sort of
+	 * the whole array, also when there are many equal values.
+	 */
+	@Test
+	@SuppressWarnings("rawtypes")
+	public void testSelectBestAsMergeSort() {
+
+		Assert.assertEquals(4, ParallelControl.getParallelism());
+
+		Random random = new Random(1);
+
+		double[] values = new double[1000];
+
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(10);
+		}
+
+		for (boolean descendentOrder : new boolean[] { false, true }) {
+
+			// The list type is the one of OrderUtils.mergeSort
+			List<Container> containers = new ArrayList<Container>();
+
+			for (int i = 0; i < values.length; i++) {
+				containers.add(new Container<Integer>(values[i], i));
+			}
+
+			OrderUtils.mergeSort(containers, descendentOrder);
+
+			for (int k : new int[] { 0, 1, 7, 100, 1000, 1500 }) {
+				for (boolean parallel : new boolean[] { false, true }) {
+
+					int[] best = OrderUtils.selectBest(values, k, descendentOrder, parallel);
+
+					Assert.assertEquals(Math.min(k, values.length), best.length);
+
+					for (int i = 0; i < best.length; i++) {
+						Assert.assertEquals(containers.get(i).getValue(), best[i]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * NaN values are selected before any other value.
+	 */
+	@Test
+	public void testSelectBestNaN() {
+
+		double[] values = { 3, Double.NaN, 5, 1, Double.NaN };
+
+		Assert.assertArrayEquals(new int[] { 1, 4, 2 }, OrderUtils.selectBest(values, 3, true, false));
+		Assert.assertArrayEquals(new int[] { 1, 4, 3 }, OrderUtils.selectBest(values, 3, false, false));
+	}
+}
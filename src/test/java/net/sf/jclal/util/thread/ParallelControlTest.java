@@ -0,0 +1,99 @@
+/*
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package net.sf.jclal.util.thread;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit tests of the shared scheduler.
+ *
+ * @author Oscar Gabriel Reyes Pupo
+ * @author Eduardo Perez Perdomo
+ */
+public class ParallelControlTest {
+
+	private static String cores;
+
+	@BeforeClass
+	public static void setUpClass() {
+		cores = System.getProperty(ParallelControl.CORES_PROPERTY);
+		ParallelControl.setParallelism(4);
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		if (cores == null) {
+			System.clearProperty(ParallelControl.CORES_PROPERTY);
+		} else {
+			System.setProperty(ParallelControl.CORES_PROPERTY, cores);
+		}
+	}
+
+	/**
+	 * Every index of the range is processed exactly once.
+	 */
+	@Test
+	public void testEveryIndexOnce() {
+
+		for (boolean parallel : new boolean[] { false, true }) {
+
+			final AtomicIntegerArray visits = new AtomicIntegerArray(1000);
+
+			ParallelControl.forRange(0, visits.length(), 7, parallel, new RangeTask() {
+				@Override
+				public void compute(int begin, int end) {
+					for (int i = begin; i < end; i++) {
+						visits.incrementAndGet(i);
+					}
+				}
+			});
+
+			for (int i = 0; i < visits.length(); i++) {
+				Assert.assertEquals(1, visits.get(i));
+			}
+		}
+	}
+
+	/**
+	 * An exception of a chunk is thrown to the caller.
+	 */
+	@Test
+	public void testExceptionIsRethrown() {
+
+		for (boolean parallel : new boolean[] { false, true }) {
+			try {
+				ParallelControl.forRange(0, 1000, 10, parallel, new RangeTask() {
+					@Override
+					public void compute(int begin, int end) {
+						if (begin <= 500 && 500 < end) {
+							throw new IllegalStateException("chunk " + begin);
+						}
+					}
+				});
+
+				Assert.fail("The exception was swallowed");
+
+			} catch (IllegalStateException ex) {
+				// expected
+			}
+		}
+	}
+}